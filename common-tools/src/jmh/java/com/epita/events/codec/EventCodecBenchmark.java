@@ -0,0 +1,117 @@
+package com.epita.events.codec;
+
+import com.epita.events.UserActionEvent;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode / decode throughput and payload size of the JSON and binary codecs, on a mix of the events the
+ * services publish. The size is reported by the {@code encode} benchmark as two counters: the bytes
+ * encoded and the events encoded during an iteration, bytes per event being their ratio.
+ * Run with {@code mvn -pl common-tools -Pjmh test -Djmh.args=EventCodecBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class EventCodecBenchmark {
+
+    private static final int EVENTS = 10_000;
+
+    @Param({"json", "binary"})
+    public String codecName;
+
+    private EventCodec codec;
+    private UserActionEvent[] events;
+    private byte[][] payloads;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        int next() {
+            int current = next;
+            next = current + 1 == EVENTS ? 0 : current + 1;
+            return current;
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Payloads {
+        public long bytes;
+        public long encoded;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+            encoded = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        codec = EventCodecs.forName(codecName);
+        events = events();
+        payloads = new byte[EVENTS][];
+        for (int i = 0; i < EVENTS; i++) {
+            payloads[i] = codec.encode(events[i]);
+        }
+    }
+
+    @Benchmark
+    public byte[] encode(Cursor cursor, Payloads sizes) {
+        byte[] payload = codec.encode(events[cursor.next()]);
+        sizes.bytes += payload.length;
+        sizes.encoded++;
+        return payload;
+    }
+
+    @Benchmark
+    public UserActionEvent decode(Cursor cursor) {
+        return codec.decode(payloads[cursor.next()]);
+    }
+
+    private static UserActionEvent[] events() {
+        Random random = new Random(42);
+        UserActionEvent.ActionType[] types = UserActionEvent.ActionType.values();
+        UserActionEvent[] events = new UserActionEvent[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            UserActionEvent.ActionType type = types[random.nextInt(types.length)];
+            UserActionEvent event = new UserActionEvent();
+            event.setActionType(type);
+            event.setUserId(new UUID(random.nextLong(), random.nextLong()).toString());
+            event.setUsername("user-" + random.nextInt(100_000));
+            event.setTimestamp(new Date(1_700_000_000_000L + i));
+            if (type.name().startsWith("POST")) {
+                event.setPostId(new UUID(random.nextLong(), random.nextLong()).toString());
+                if (type == UserActionEvent.ActionType.POST_CREATED) {
+                    event.setPostContent("Post number " + i + " with some text that a user would write");
+                }
+            } else if (type != UserActionEvent.ActionType.USER_CREATED && type != UserActionEvent.ActionType.USER_DELETED) {
+                event.setTargetId(new UUID(random.nextLong(), random.nextLong()).toString());
+                event.setTargetUsername("user-" + random.nextInt(100_000));
+            }
+            events[i] = event;
+        }
+        return events;
+    }
+}
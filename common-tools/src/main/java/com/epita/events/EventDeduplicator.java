@@ -0,0 +1,132 @@
+package com.epita.events;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.vertx.mutiny.redis.client.Response;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Skips events this service already applied, using the id set by the publisher.
+ * An event is claimed by a handler before being handled, confirmed once handled, and released if the
+ * handling fails so that a redelivery can apply it. Claims are kept in a bounded in-memory window of the
+ * last {@code events.dedup.window-size} events and, with {@code events.dedup.redis.enabled}, in Redis,
+ * which also covers the replicas of the service and restarts: a claim is taken with {@code SET NX} and
+ * a short TTL ({@code events.dedup.redis.in-progress-ttl}), so that the claim of a pod that died while
+ * handling the event expires before the event is reclaimed, and confirmation extends it to
+ * {@code events.dedup.redis.ttl}. With Redis the calls block: make them from the handler thread.
+ * Duplicates are counted in {@code events.dedup.duplicates}, tagged by where they were caught.
+ */
+@ApplicationScoped
+public class EventDeduplicator {
+    private static final String KEY_PREFIX = "events:dedup:";
+
+    private final RedisDataSource ds;
+    private final Logger logger;
+    private final boolean useRedis;
+    private final String ttlMillis;
+    private final String inProgressTtlMillis;
+    private final String keyPrefix;
+    private final Map<String, Boolean> window;
+    private final Counter memoryDuplicates;
+    private final Counter redisDuplicates;
+
+    public EventDeduplicator(RedisDataSource ds,
+                             MeterRegistry registry,
+                             Logger logger,
+                             @ConfigProperty(name = "quarkus.application.name") String applicationName,
+                             @ConfigProperty(name = "events.dedup.window-size", defaultValue = "10000") int windowSize,
+                             @ConfigProperty(name = "events.dedup.redis.enabled", defaultValue = "false") boolean useRedis,
+                             @ConfigProperty(name = "events.dedup.redis.ttl", defaultValue = "1H") Duration ttl,
+                             @ConfigProperty(name = "events.dedup.redis.in-progress-ttl", defaultValue = "30S") Duration inProgressTtl) {
+        this.ds = ds;
+        this.logger = logger;
+        this.useRedis = useRedis;
+        this.ttlMillis = Long.toString(ttl.toMillis());
+        this.inProgressTtlMillis = Long.toString(inProgressTtl.toMillis());
+        this.keyPrefix = KEY_PREFIX + applicationName + ":";
+        // Access-ordered LRU: the least recently seen event ids are forgotten first
+        this.window = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > windowSize;
+            }
+        };
+        this.memoryDuplicates = Counter.builder("events.dedup.duplicates")
+                .description("Events skipped because they were already applied")
+                .tag("source", "memory")
+                .register(registry);
+        this.redisDuplicates = Counter.builder("events.dedup.duplicates")
+                .description("Events skipped because they were already applied")
+                .tag("source", "redis")
+                .register(registry);
+    }
+
+    /**
+     * @param eventId the id of the received event, qualified by the handler
+     * @return true if the event must be handled, false if it was already claimed
+     */
+    public boolean claim(String eventId) {
+        synchronized (window) {
+            if (window.putIfAbsent(eventId, Boolean.TRUE) != null) {
+                memoryDuplicates.increment();
+                return false;
+            }
+        }
+        if (!useRedis) {
+            return true;
+        }
+        try {
+            Response claimed = ds.execute("SET", keyPrefix + eventId, "in-progress", "NX", "PX", inProgressTtlMillis);
+            if (claimed == null) {
+                redisDuplicates.increment();
+                return false;
+            }
+        } catch (Exception e) {
+            // Better handle an event twice than drop it
+            logger.warnf("[DEDUP][REDIS]: Could not claim event %s: %s", eventId, e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Marks a claimed event as applied, for {@code events.dedup.redis.ttl}.
+     *
+     * @param eventId the id given to {@link #claim}
+     */
+    public void confirm(String eventId) {
+        if (!useRedis) {
+            return;
+        }
+        try {
+            ds.execute("SET", keyPrefix + eventId, "applied", "PX", ttlMillis);
+        } catch (Exception e) {
+            // The in-progress claim expires: a redelivery would be handled again
+            logger.warnf("[DEDUP][REDIS]: Could not confirm event %s: %s", eventId, e.getMessage());
+        }
+    }
+
+    /**
+     * Forgets a claim after the handling of the event failed, so that a redelivery is handled.
+     *
+     * @param eventId the id given to {@link #claim}
+     */
+    public void release(String eventId) {
+        synchronized (window) {
+            window.remove(eventId);
+        }
+        if (useRedis) {
+            try {
+                ds.execute("DEL", keyPrefix + eventId);
+            } catch (Exception e) {
+                logger.warnf("[DEDUP][REDIS]: Could not release event %s: %s", eventId, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.epita.events;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs the blocking work of event subscribers (Mongo, Neo4j, Elasticsearch calls) off the Redis
+ * event loop, instead of borrowing the small Vert.x worker pool.
+ * On a Java 21+ runtime every event gets its own virtual thread; on older runtimes (or with
+ * {@code events.dispatcher.virtual-threads=false}) a fixed pool of platform threads is used.
+ * Either way at most {@code events.dispatcher.max-concurrency} handlers run at the same time.
+ * Events dispatched with a key are handled one after the other, in dispatch order. A batch of events
+ * can hold the keys of all its events at once.
+ * The time between dispatch and the start of a handler is exported as {@code events.dispatcher.wait}.
+ * Queue depths are exported as gauges: {@code events.dispatcher.queued} (handlers waiting for a
+ * permit), {@code events.dispatcher.active} (handlers running), {@code events.dispatcher.keys} (ordering
+ * keys with unfinished handlers) and {@code events.dispatcher.key_depth.max} (unfinished handlers of
+ * the most loaded key, e.g. a user whose events pile up behind a slow one).
+ */
+@ApplicationScoped
+public class EventDispatcher {
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final boolean virtualThreads;
+    private final Duration shutdownTimeout;
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Object multiKeyLock = new Object();
+    private final Timer waitTime;
+    private final Logger logger;
+
+    public EventDispatcher(@ConfigProperty(name = "events.dispatcher.max-concurrency", defaultValue = "64") int maxConcurrency,
+                           @ConfigProperty(name = "events.dispatcher.virtual-threads", defaultValue = "true") boolean useVirtualThreads,
+                           @ConfigProperty(name = "events.dispatcher.shutdown-timeout", defaultValue = "10S") Duration shutdownTimeout,
+                           MeterRegistry registry,
+                           Logger logger) {
+        this.logger = logger;
+        this.waitTime = Timer.builder("events.dispatcher.wait")
+                .description("Time events wait for their handler to start")
+                .register(registry);
+        this.permits = new Semaphore(maxConcurrency);
+        Gauge.builder("events.dispatcher.queued", queued, AtomicInteger::get)
+                .description("Handlers waiting for a permit")
+                .register(registry);
+        Gauge.builder("events.dispatcher.active", permits, semaphore -> maxConcurrency - semaphore.availablePermits())
+                .description("Handlers running")
+                .register(registry);
+        Gauge.builder("events.dispatcher.keys", lanes, Map::size)
+                .description("Ordering keys with unfinished handlers")
+                .register(registry);
+        Gauge.builder("events.dispatcher.key_depth.max", this, EventDispatcher::maxKeyDepth)
+                .description("Unfinished handlers of the ordering key with the most of them")
+                .register(registry);
+        this.shutdownTimeout = shutdownTimeout;
+        ExecutorService virtual = useVirtualThreads ? newVirtualThreadExecutor() : null;
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : newPlatformExecutor(maxConcurrency);
+        logger.infof("[DISPATCHER][INIT]: Handling events on %s threads, at most %d at a time",
+                virtualThreads ? "virtual" : "platform", maxConcurrency);
+    }
+
+    /**
+     * @return true if handlers run on virtual threads
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Runs a handler as soon as a permit is available.
+     *
+     * @param task the handler
+     * @return completed when the handler returns, or exceptionally with the exception it threw
+     */
+    public CompletableFuture<Void> dispatch(Runnable task) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        submit(task, done, System.nanoTime());
+        return done;
+    }
+
+    /**
+     * Runs a handler after every handler previously dispatched with the same key, whether they
+     * succeeded or not. Handlers with different keys run in parallel.
+     *
+     * @param key  the ordering key (e.g. the username), null for no ordering
+     * @param task the handler
+     * @return completed when the handler returns, or exceptionally with the exception it threw
+     */
+    public CompletableFuture<Void> dispatch(String key, Runnable task) {
+        if (key == null) {
+            return dispatch(task);
+        }
+        long dispatchedAt = System.nanoTime();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<Void> previous = enqueue(key, done);
+        if (previous == null) {
+            submit(task, done, dispatchedAt);
+        } else {
+            previous.whenComplete((result, error) -> submit(task, done, dispatchedAt));
+        }
+        return done;
+    }
+
+    /**
+     * Starts a handling made of several steps (e.g. a handler and its retries, each dispatched with
+     * {@link #dispatch(Runnable)}) after every handler previously dispatched with the same key, and
+     * holds the key until the handling completes: later handlers of the key wait for all its steps.
+     *
+     * @param key      the ordering key (e.g. the username), null for no ordering
+     * @param handling starts the handling and returns its completion
+     * @return completed when the future returned by {@code handling} completes, the same way
+     */
+    public CompletableFuture<Void> dispatchInOrder(String key, Supplier<CompletableFuture<Void>> handling) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<Void> previous = key == null ? null : enqueue(key, done);
+        if (previous == null) {
+            relay(handling, done);
+        } else {
+            previous.whenComplete((result, error) -> relay(handling, done));
+        }
+        return done;
+    }
+
+    /**
+     * Same as {@link #dispatchInOrder(String, Supplier)} for a handling of several events: it starts after
+     * every handler previously dispatched with any of the keys, and holds all of them until it completes.
+     *
+     * @param keys     the ordering keys of the events, nulls are ignored
+     * @param handling starts the handling and returns its completion
+     * @return completed when the future returned by {@code handling} completes, the same way
+     */
+    public CompletableFuture<Void> dispatchInOrder(Collection<String> keys, Supplier<CompletableFuture<Void>> handling) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        List<CompletableFuture<Void>> previous = new ArrayList<>();
+        // Keys are taken all at once, so that two handlings sharing keys cannot each wait for the other
+        synchronized (multiKeyLock) {
+            for (String key : new LinkedHashSet<>(keys)) {
+                CompletableFuture<Void> last = key == null ? null : enqueue(key, done);
+                if (last != null) {
+                    previous.add(last);
+                }
+            }
+        }
+        if (previous.isEmpty()) {
+            relay(handling, done);
+        } else {
+            CompletableFuture.allOf(previous.toArray(CompletableFuture[]::new))
+                    .whenComplete((result, error) -> relay(handling, done));
+        }
+        return done;
+    }
+
+    private static void relay(Supplier<CompletableFuture<Void>> handling, CompletableFuture<Void> done) {
+        CompletableFuture<Void> handled;
+        try {
+            handled = handling.get();
+        } catch (Throwable t) {
+            handled = CompletableFuture.failedFuture(t);
+        }
+        handled.whenComplete((result, error) -> {
+            if (error == null) {
+                done.complete(null);
+            } else {
+                done.completeExceptionally(error);
+            }
+        });
+    }
+
+    /**
+     * Makes {@code done} the last handler of the key, and forgets the key once its last handler is done.
+     *
+     * @return the handler {@code done} has to wait for, null if none
+     */
+    private CompletableFuture<Void> enqueue(String key, CompletableFuture<Void> done) {
+        List<CompletableFuture<Void>> previous = new ArrayList<>(1);
+        lanes.compute(key, (k, existing) -> {
+            Lane lane = existing == null ? new Lane() : existing;
+            previous.add(lane.tail);
+            lane.tail = done;
+            lane.depth++;
+            return lane;
+        });
+        done.whenComplete((result, error) -> lanes.computeIfPresent(key, (k, existing) -> --existing.depth == 0 ? null : existing));
+        return previous.get(0);
+    }
+
+    private int maxKeyDepth() {
+        int max = 0;
+        for (Lane lane : lanes.values()) {
+            max = Math.max(max, lane.depth);
+        }
+        return max;
+    }
+
+    private void submit(Runnable task, CompletableFuture<Void> done, long dispatchedAt) {
+        queued.incrementAndGet();
+        try {
+            executor.execute(() -> run(task, done, dispatchedAt));
+        } catch (RejectedExecutionException e) {
+            // Late events after shutdown are handled on the caller thread rather than dropped
+            run(task, done, dispatchedAt);
+        }
+    }
+
+    private void run(Runnable task, CompletableFuture<Void> done, long dispatchedAt) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            done.completeExceptionally(e);
+            return;
+        } finally {
+            queued.decrementAndGet();
+        }
+        waitTime.record(System.nanoTime() - dispatchedAt, TimeUnit.NANOSECONDS);
+        try {
+            task.run();
+            done.complete(null);
+        } catch (Throwable t) {
+            done.completeExceptionally(t);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Looks up {@code Executors.newVirtualThreadPerTaskExecutor()} at runtime, so that the module still
+     * builds for Java 17 and switches to virtual threads when it runs on Java 21+.
+     */
+    private ExecutorService newVirtualThreadExecutor() {
+        if (Runtime.version().feature() < 21) {
+            return null;
+        }
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.warnf("[DISPATCHER][INIT]: Virtual threads unavailable, falling back to platform threads: %s", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * The handlers dispatched with a key and not finished yet. Only changed inside {@code lanes.compute}.
+     */
+    private static final class Lane {
+        private CompletableFuture<Void> tail;
+        private volatile int depth;
+    }
+
+    private static ExecutorService newPlatformExecutor(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "event-dispatcher-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(shutdownTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                logger.warn("[DISPATCHER][SHUTDOWN]: Handlers did not finish in time, pending events are dropped");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+}
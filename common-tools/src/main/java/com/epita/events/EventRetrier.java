@@ -0,0 +1,88 @@
+package com.epita.events;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retry policy of failed event handlers: up to {@code events.retry.max-attempts} attempts, the n-th
+ * retry being delayed by {@code events.retry.initial-backoff * 2^(n-1)} (capped at
+ * {@code events.retry.max-backoff}, with +/-20% jitter so that retries of a burst do not all hit the
+ * database at once). Retries waiting at shutdown are dropped and the ones scheduled after it are
+ * rejected: with the streams transport their events are still pending and get reclaimed.
+ */
+@ApplicationScoped
+public class EventRetrier {
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final ScheduledExecutorService scheduler;
+    private final Counter retries;
+    private final Logger logger;
+
+    public EventRetrier(MeterRegistry registry,
+                        Logger logger,
+                        @ConfigProperty(name = "events.retry.max-attempts", defaultValue = "5") int maxAttempts,
+                        @ConfigProperty(name = "events.retry.initial-backoff", defaultValue = "500ms") Duration initialBackoff,
+                        @ConfigProperty(name = "events.retry.max-backoff", defaultValue = "1M") Duration maxBackoff) {
+        this.logger = logger;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMillis = initialBackoff.toMillis();
+        this.maxBackoffMillis = maxBackoff.toMillis();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-retry-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.retries = Counter.builder("events.retries")
+                .description("Failed event handlings scheduled for another attempt")
+                .register(registry);
+    }
+
+    /**
+     * @param attempt the attempt that just failed, starting at 1
+     * @return true if another attempt is allowed
+     */
+    public boolean shouldRetry(int attempt) {
+        return attempt < maxAttempts;
+    }
+
+    /**
+     * Schedules the next attempt after the backoff of the failed one.
+     *
+     * @param attempt the attempt that just failed, starting at 1
+     * @param retry   runs the next attempt
+     * @throws RejectedExecutionException if the retrier is shut down
+     */
+    public void schedule(int attempt, Runnable retry) {
+        scheduler.schedule(retry, backoffMillis(attempt), TimeUnit.MILLISECONDS);
+        retries.increment();
+    }
+
+    long backoffMillis(int attempt) {
+        long backoff = initialBackoffMillis << Math.min(attempt - 1, 30);
+        if (backoff <= 0 || backoff > maxBackoffMillis) {
+            backoff = maxBackoffMillis;
+        }
+        return (long) (backoff * ThreadLocalRandom.current().nextDouble(0.8, 1.2));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        int dropped = scheduler.shutdownNow().size();
+        if (dropped > 0) {
+            logger.warnf("[RETRY][SHUTDOWN]: Dropped %d scheduled retries", dropped);
+        }
+    }
+}
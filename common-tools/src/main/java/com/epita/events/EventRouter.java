@@ -0,0 +1,282 @@
+package com.epita.events;
+
+import com.epita.events.deadletter.DeadLetterStore;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Lookup table from action type to the handlers registered for it, indexed by ordinal. The table is
+ * copied on (rare) registration so that routing an event is a lock-free array read.
+ * Each handler skips the events it already applied (see {@link EventDeduplicator}). A failed handling
+ * is retried with backoff (see {@link EventRetrier}), then moved to the dead letters: the returned
+ * future only fails if the dead letter could not be stored, so that the streams entry stays pending.
+ * The ordering key of an event is held until it is handled or dead-lettered, retries included, so that
+ * later events of the same key are never applied before it (e.g. a POST_DELETED before the retried
+ * POST_CREATED of the same post).
+ * A batched route receives at once all its events delivered together by the consumer (see
+ * {@link #routeAll}), and holds all their keys meanwhile. To keep the order of each key, a batch is
+ * closed early when another route receives an event of one of its keys. Deduplication, retries and
+ * dead letters work as for single events, with the whole batch retried and each event dead-lettered.
+ */
+class EventRouter {
+    private static final Route[] NO_ROUTES = new Route[0];
+    private static final CompletableFuture<Void> UNROUTED = CompletableFuture.completedFuture(null);
+
+    /**
+     * @param name    stable name of the handler, deduplication is done per handler
+     * @param handler receives the events to apply: always one unless {@code batched}
+     */
+    record Route(String name, Function<UserActionEvent, String> orderingKey, Consumer<List<UserActionEvent>> handler,
+                 boolean batched) {
+
+        Route(String name, Function<UserActionEvent, String> orderingKey, Consumer<UserActionEvent> handler) {
+            this(name, orderingKey, events -> events.forEach(handler), false);
+        }
+    }
+
+    /**
+     * The events of a batched route collected from one delivery, and the positions of these events in it.
+     */
+    private static final class Batch {
+        private final List<UserActionEvent> events = new ArrayList<>();
+        private final List<Integer> positions = new ArrayList<>();
+        private final Set<String> keys = new HashSet<>();
+    }
+
+    private final EventDispatcher dispatcher;
+    private final EventDeduplicator deduplicator;
+    private final EventRetrier retrier;
+    private final DeadLetterStore deadLetters;
+    private final Logger logger;
+    private volatile Route[][] table;
+
+    EventRouter(EventDispatcher dispatcher, EventDeduplicator deduplicator, EventRetrier retrier,
+                DeadLetterStore deadLetters, Logger logger) {
+        this.dispatcher = dispatcher;
+        this.deduplicator = deduplicator;
+        this.retrier = retrier;
+        this.deadLetters = deadLetters;
+        this.logger = logger;
+        Route[][] empty = new Route[UserActionEvent.ActionType.values().length][];
+        Arrays.fill(empty, NO_ROUTES);
+        this.table = empty;
+    }
+
+    synchronized void add(Collection<UserActionEvent.ActionType> actionTypes, Route route) {
+        Route[][] copy = table.clone();
+        for (UserActionEvent.ActionType actionType : actionTypes) {
+            Route[] routes = Arrays.copyOf(copy[actionType.ordinal()], copy[actionType.ordinal()].length + 1);
+            routes[routes.length - 1] = route;
+            copy[actionType.ordinal()] = routes;
+        }
+        table = copy;
+    }
+
+    synchronized void remove(Route route) {
+        Route[][] copy = table.clone();
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = Arrays.stream(copy[i]).filter(existing -> existing != route).toArray(Route[]::new);
+        }
+        table = copy;
+    }
+
+    boolean handles(UserActionEvent event) {
+        return event.getActionType() != null && table[event.getActionType().ordinal()].length > 0;
+    }
+
+    boolean isEmpty() {
+        return Arrays.stream(table).allMatch(routes -> routes.length == 0);
+    }
+
+    Optional<Route> find(String name) {
+        return Arrays.stream(table)
+                .flatMap(Arrays::stream)
+                .filter(route -> route.name().equals(name))
+                .findFirst();
+    }
+
+    /**
+     * Handles a dead letter again with its handler, once and without retries.
+     *
+     * @return completed once handled, exceptionally if the handler failed again
+     */
+    CompletableFuture<Void> replay(Route route, UserActionEvent event) {
+        return dispatcher.dispatch(route.orderingKey().apply(event), () -> handle(route, List.of(event)));
+    }
+
+    /**
+     * Dispatches an event to every handler of its action type.
+     *
+     * @return completed once every handler is done, exceptionally if one of them failed
+     */
+    CompletableFuture<Void> route(UserActionEvent event) {
+        return routeAll(List.of(event)).get(0);
+    }
+
+    /**
+     * Dispatches events delivered together (e.g. by one stream read) to every handler of their action
+     * types. Batched routes receive their events of the delivery in one handling.
+     *
+     * @return for each event, in the same order, completed once every handler of the event is done,
+     *         exceptionally if one of them failed
+     */
+    List<CompletableFuture<Void>> routeAll(List<UserActionEvent> events) {
+        Route[][] current = table;
+        List<List<CompletableFuture<Void>>> handlings = new ArrayList<>(events.size());
+        Map<Route, Batch> open = new LinkedHashMap<>();
+        for (int i = 0; i < events.size(); i++) {
+            UserActionEvent event = events.get(i);
+            Route[] routes = event.getActionType() == null ? NO_ROUTES : current[event.getActionType().ordinal()];
+            List<CompletableFuture<Void>> handling = new ArrayList<>(routes.length);
+            handlings.add(handling);
+            for (Route route : routes) {
+                String key = route.orderingKey().apply(event);
+                closeBatchesHolding(key, route, open, handlings);
+                if (route.batched()) {
+                    Batch batch = open.computeIfAbsent(route, added -> new Batch());
+                    batch.events.add(event);
+                    batch.positions.add(i);
+                    if (key != null) {
+                        batch.keys.add(key);
+                    }
+                } else {
+                    handling.add(dispatch(route, List.of(event), key == null ? List.of() : List.of(key)));
+                }
+            }
+        }
+        open.forEach((route, batch) -> close(route, batch, handlings));
+
+        List<CompletableFuture<Void>> routed = new ArrayList<>(events.size());
+        for (List<CompletableFuture<Void>> handling : handlings) {
+            if (handling.isEmpty()) {
+                routed.add(UNROUTED);
+            } else if (handling.size() == 1) {
+                routed.add(handling.get(0));
+            } else {
+                routed.add(CompletableFuture.allOf(handling.toArray(CompletableFuture[]::new)));
+            }
+        }
+        return routed;
+    }
+
+    // Dispatches the batches of other routes holding the key, so that they keep their place in its order
+    private void closeBatchesHolding(String key, Route route, Map<Route, Batch> open, List<List<CompletableFuture<Void>>> handlings) {
+        if (key == null || open.isEmpty()) {
+            return;
+        }
+        Iterator<Map.Entry<Route, Batch>> batches = open.entrySet().iterator();
+        while (batches.hasNext()) {
+            Map.Entry<Route, Batch> batch = batches.next();
+            if (batch.getKey() != route && batch.getValue().keys.contains(key)) {
+                batches.remove();
+                close(batch.getKey(), batch.getValue(), handlings);
+            }
+        }
+    }
+
+    private void close(Route route, Batch batch, List<List<CompletableFuture<Void>>> handlings) {
+        CompletableFuture<Void> done = dispatch(route, batch.events, batch.keys);
+        for (int position : batch.positions) {
+            handlings.get(position).add(done);
+        }
+    }
+
+    private CompletableFuture<Void> dispatch(Route route, List<UserActionEvent> events, Collection<String> keys) {
+        Supplier<CompletableFuture<Void>> handling = () -> {
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            attempt(route, events, 1, done);
+            return done;
+        };
+        if (keys.size() <= 1) {
+            return dispatcher.dispatchInOrder(keys.isEmpty() ? null : keys.iterator().next(), handling);
+        }
+        return dispatcher.dispatchInOrder(keys, handling);
+    }
+
+    // Runs inside the slots of the ordering keys, see dispatch
+    private void attempt(Route route, List<UserActionEvent> events, int attempt, CompletableFuture<Void> done) {
+        UserActionEvent first = events.get(0);
+        dispatcher.dispatch(() -> handle(route, events))
+                .whenComplete((result, error) -> {
+                    if (error == null) {
+                        done.complete(null);
+                    } else if (retrier.shouldRetry(attempt)) {
+                        logger.warnf("[%s][EVENTS]: Attempt %d failed for %s, retrying: %s",
+                                first.getActionType(), attempt, describe(events), error.getMessage());
+                        try {
+                            retrier.schedule(attempt, () -> attempt(route, events, attempt + 1, done));
+                        } catch (RejectedExecutionException rejected) {
+                            // Shutting down: release the keys, the events stay unacknowledged
+                            logger.warnf("[%s][EVENTS]: Could not retry %s, the retrier is shut down",
+                                    first.getActionType(), describe(events));
+                            done.completeExceptionally(error);
+                        }
+                    } else {
+                        logger.errorf("[%s][EVENTS]: Failed to handle %s after %d attempts: %s",
+                                first.getActionType(), events.size() == 1 ? "event " + first : describe(events), attempt, error.getMessage());
+                        deadLetter(route, events, error, attempt, done);
+                    }
+                });
+    }
+
+    private void deadLetter(Route route, List<UserActionEvent> events, Throwable error, int attempts, CompletableFuture<Void> done) {
+        Throwable cause = error.getCause() != null ? error.getCause() : error;
+        // Blocking Redis calls, kept off the Vert.x event loop
+        dispatcher.dispatch(() -> events.forEach(event -> deadLetters.add(route.name(), event, cause, attempts)))
+                .whenComplete((result, storeError) -> {
+                    if (storeError == null) {
+                        done.complete(null);
+                    } else {
+                        logger.errorf("[%s][EVENTS]: Could not store dead letters of %s: %s",
+                                events.get(0).getActionType(), describe(events), storeError.getMessage());
+                        done.completeExceptionally(storeError);
+                    }
+                });
+    }
+
+    private void handle(Route route, List<UserActionEvent> events) {
+        List<UserActionEvent> claimed = new ArrayList<>(events.size());
+        List<String> claims = new ArrayList<>(events.size());
+        for (UserActionEvent event : events) {
+            // Events from publishers that do not set an id cannot be deduplicated
+            String claim = event.getEventId() == null ? null : event.getEventId() + "/" + route.name();
+            if (claim != null && !deduplicator.claim(claim)) {
+                logger.debugf("[%s][EVENTS]: Skipping already applied event %s", event.getActionType(), event.getEventId());
+                continue;
+            }
+            claimed.add(event);
+            if (claim != null) {
+                claims.add(claim);
+            }
+        }
+        if (claimed.isEmpty()) {
+            return;
+        }
+        try {
+            route.handler().accept(claimed);
+        } catch (RuntimeException e) {
+            claims.forEach(deduplicator::release);
+            throw e;
+        }
+        claims.forEach(deduplicator::confirm);
+    }
+
+    private static String describe(List<UserActionEvent> events) {
+        return events.size() == 1 ? "event " + events.get(0).getEventId() : events.size() + " events";
+    }
+}
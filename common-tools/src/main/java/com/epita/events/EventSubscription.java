@@ -0,0 +1,12 @@
+package com.epita.events;
+
+/**
+ * Handle on a subscription made through {@link UserActionEventBus#subscribe}.
+ */
+public interface EventSubscription {
+
+    /**
+     * Stops receiving events. Events already received are still handled.
+     */
+    void unsubscribe();
+}
@@ -0,0 +1,124 @@
+package com.epita.events;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounds the events a consumer received but did not finish handling (retries included), so that a
+ * burst waits in Redis instead of in the heap. Once {@code highWaterMark} events are in flight the
+ * consumer is paused, and resumed when half of them are done. Events still delivered past
+ * {@code capacity} (already read from the socket when the consumer paused) are rejected.
+ * Exports {@code events.consumer.in_flight}, {@code events.consumer.pauses} and
+ * {@code events.consumer.rejected}, tagged by transport.
+ */
+class InFlightLimiter {
+
+    private final int capacity;
+    private final int highWaterMark;
+    private final int lowWaterMark;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter pauses;
+    private final Counter rejected;
+    private Runnable onPause = () -> { };
+    private Runnable onResume = () -> { };
+    private volatile boolean paused;
+
+    InFlightLimiter(MeterRegistry registry, String transport, int highWaterMark, int capacity) {
+        this.highWaterMark = Math.max(1, highWaterMark);
+        this.lowWaterMark = this.highWaterMark / 2;
+        this.capacity = Math.max(this.highWaterMark, capacity);
+        Gauge.builder("events.consumer.in_flight", inFlight, AtomicInteger::get)
+                .description("Events received and not handled yet")
+                .tag("transport", transport)
+                .register(registry);
+        this.pauses = Counter.builder("events.consumer.pauses")
+                .description("Times the consumer stopped reading because too many events were in flight")
+                .tag("transport", transport)
+                .register(registry);
+        this.rejected = Counter.builder("events.consumer.rejected")
+                .description("Events dropped because the in-flight queue was full")
+                .tag("transport", transport)
+                .register(registry);
+    }
+
+    /**
+     * @param onPause  stops the reads of the consumer
+     * @param onResume restarts them
+     */
+    synchronized void onSaturation(Runnable onPause, Runnable onResume) {
+        this.onPause = onPause;
+        this.onResume = onResume;
+    }
+
+    /**
+     * Takes a slot for a received event, pausing the consumer if it reaches the high-water mark.
+     *
+     * @return false if the event is rejected
+     */
+    boolean tryAcquire() {
+        int current = inFlight.incrementAndGet();
+        if (current > capacity) {
+            inFlight.decrementAndGet();
+            rejected.increment();
+            return false;
+        }
+        if (current >= highWaterMark && !paused) {
+            pause();
+        }
+        return true;
+    }
+
+    /**
+     * Frees the slot of a handled event, resuming the consumer if it drops to the low-water mark.
+     */
+    void release() {
+        int current = inFlight.decrementAndGet();
+        if (current <= lowWaterMark && paused) {
+            resume();
+        }
+    }
+
+    /**
+     * @return how many events can be read before reaching the high-water mark, 0 while paused
+     */
+    int available() {
+        return paused ? 0 : Math.max(0, highWaterMark - inFlight.get());
+    }
+
+    boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Waits until the consumer is resumed, at most the given time.
+     */
+    synchronized void awaitResume(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        long remaining;
+        while (paused && (remaining = deadline - System.nanoTime()) > 0) {
+            wait(Math.max(1, remaining / 1_000_000));
+        }
+    }
+
+    // The counter is checked again under the lock: a pause and a resume racing each other end in the
+    // state matching the number of events in flight.
+    private synchronized void pause() {
+        if (!paused && inFlight.get() >= highWaterMark) {
+            paused = true;
+            pauses.increment();
+            onPause.run();
+        }
+    }
+
+    private synchronized void resume() {
+        if (paused && inFlight.get() <= lowWaterMark) {
+            paused = false;
+            onResume.run();
+            notifyAll();
+        }
+    }
+}
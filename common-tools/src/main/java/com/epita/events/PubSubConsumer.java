@@ -0,0 +1,178 @@
+package com.epita.events;
+
+import com.epita.events.codec.EventCodecs;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.mutiny.redis.client.Command;
+import io.vertx.mutiny.redis.client.Redis;
+import io.vertx.mutiny.redis.client.RedisConnection;
+import io.vertx.mutiny.redis.client.Request;
+import io.vertx.mutiny.redis.client.Response;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * The pub/sub subscription of a service: one Redis connection subscribed to every channel the service
+ * listens to. The connection is paused while too many events are in flight (see {@link InFlightLimiter}):
+ * Redis keeps the messages in its output buffer meanwhile, and drops the connection if the buffer
+ * exceeds its {@code client-output-buffer-limit pubsub}, in which case the consumer subscribes again.
+ * Use the streams transport to never lose events under sustained overload.
+ * The messages parsed from one read of the connection are routed together, once the event loop is done
+ * with the read, so that batched handlers get them at once.
+ */
+class PubSubConsumer {
+    private static final Duration RECONNECT_DELAY = Duration.ofSeconds(1);
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+
+    private final Redis redis;
+    private final InFlightLimiter limiter;
+    private final Function<List<UserActionEvent>, List<CompletableFuture<Void>>> handler;
+    private final Logger logger;
+    private final Set<String> channels = ConcurrentHashMap.newKeySet();
+    // Only used on the event loop of the connection
+    private List<UserActionEvent> received = new ArrayList<>();
+    private volatile RedisConnection connection;
+    private volatile boolean running = true;
+
+    PubSubConsumer(Redis redis,
+                   InFlightLimiter limiter,
+                   Function<List<UserActionEvent>, List<CompletableFuture<Void>>> handler,
+                   Logger logger) {
+        this.redis = redis;
+        this.limiter = limiter;
+        this.handler = handler;
+        this.logger = logger;
+        limiter.onSaturation(this::pause, this::resume);
+    }
+
+    /**
+     * Subscribes to the given channels, connecting first if needed. Blocks until Redis confirmed the
+     * subscription, so that events published right after startup are received.
+     */
+    synchronized void addChannels(Collection<String> added) {
+        running = true;
+        channels.addAll(added);
+        if (connection == null) {
+            connection = connect();
+            subscribe(connection, channels).await().atMost(CONNECT_TIMEOUT);
+        } else {
+            subscribe(connection, added).await().atMost(CONNECT_TIMEOUT);
+        }
+        logger.infof("[PUBSUB][SUBSCRIBE]: Listening to %s", channels);
+    }
+
+    private RedisConnection connect() {
+        RedisConnection opened = redis.connect().await().atMost(CONNECT_TIMEOUT);
+        opened.handler(this::onMessage);
+        opened.exceptionHandler(e -> logger.errorf("[PUBSUB][CONNECTION]: %s", e.getMessage()));
+        opened.endHandler(() -> onClosed(opened));
+        if (limiter.isPaused()) {
+            opened.pause();
+        }
+        return opened;
+    }
+
+    private Uni<Response> subscribe(RedisConnection target, Collection<String> subscribed) {
+        return target.send(Request.cmd(Command.SUBSCRIBE, List.copyOf(subscribed).toArray()));
+    }
+
+    private void onClosed(RedisConnection closed) {
+        if (!running || connection != closed) {
+            return;
+        }
+        logger.warnf("[PUBSUB][CONNECTION]: Connection closed by Redis (output buffer full?), subscribing again to %s", channels);
+        // Called on the event loop: reconnect from another thread
+        CompletableFuture.runAsync(this::reconnect,
+                CompletableFuture.delayedExecutor(RECONNECT_DELAY.toMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    private synchronized void reconnect() {
+        if (!running) {
+            return;
+        }
+        try {
+            connection = connect();
+            subscribe(connection, channels).await().atMost(CONNECT_TIMEOUT);
+            logger.infof("[PUBSUB][SUBSCRIBE]: Listening again to %s", channels);
+        } catch (RuntimeException e) {
+            logger.errorf("[PUBSUB][CONNECTION]: Could not subscribe again: %s", e.getMessage());
+            RedisConnection failed = connection;
+            connection = null;
+            if (failed != null) {
+                failed.closeAndForget();
+            }
+            CompletableFuture.runAsync(this::reconnect,
+                    CompletableFuture.delayedExecutor(RECONNECT_DELAY.toMillis(), TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private void onMessage(Response message) {
+        // Subscription confirmations come through the same handler as messages
+        if (message == null || message.size() < 3 || !"message".equals(message.get(0).toString())) {
+            return;
+        }
+        UserActionEvent event;
+        try {
+            event = EventCodecs.decode(message.get(2).toBytes());
+        } catch (RuntimeException e) {
+            logger.errorf("[PUBSUB][DECODE]: Dropping undecodable event: %s", e.getMessage());
+            return;
+        }
+        if (!limiter.tryAcquire()) {
+            logger.warnf("[PUBSUB][BACKPRESSURE]: Too many events in flight, dropping event %s", event.getEventId());
+            return;
+        }
+        received.add(event);
+        if (received.size() > 1) {
+            return;
+        }
+        // Runs after the other messages of the same read were added
+        Context context = Vertx.currentContext();
+        if (context == null) {
+            route();
+        } else {
+            context.runOnContext(ignored -> route());
+        }
+    }
+
+    private void route() {
+        List<UserActionEvent> events = received;
+        received = new ArrayList<>();
+        handler.apply(events).forEach(handling -> handling.whenComplete((result, error) -> limiter.release()));
+    }
+
+    private void pause() {
+        RedisConnection current = connection;
+        if (current != null) {
+            logger.warn("[PUBSUB][BACKPRESSURE]: Too many events in flight, pausing reads");
+            current.pause();
+        }
+    }
+
+    private void resume() {
+        RedisConnection current = connection;
+        if (current != null) {
+            logger.info("[PUBSUB][BACKPRESSURE]: Resuming reads");
+            current.resume();
+        }
+    }
+
+    synchronized void stop() {
+        running = false;
+        if (connection != null) {
+            connection.closeAndForget();
+            connection = null;
+        }
+        channels.clear();
+    }
+}
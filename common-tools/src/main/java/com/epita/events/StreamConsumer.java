@@ -0,0 +1,243 @@
+package com.epita.events;
+
+import com.epita.events.codec.EventCodecs;
+import io.quarkus.redis.datasource.stream.ClaimedMessages;
+import io.quarkus.redis.datasource.stream.StreamCommands;
+import io.quarkus.redis.datasource.stream.StreamMessage;
+import io.quarkus.redis.datasource.stream.XGroupCreateArgs;
+import io.quarkus.redis.datasource.stream.XReadGroupArgs;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * The consumer group of a service on the events stream, read on one dedicated thread: XREADGROUP in
+ * batches, routing, XACK of the handled entries (grouped, before the next read), and periodic XAUTOCLAIM
+ * of the entries left pending for too long by this or another consumer.
+ * Every action type goes through the one stream, so entries are read in publication order: the events
+ * of a user are routed in the order they were published whatever their types. Entries of the types the
+ * service does not handle are acknowledged without being routed.
+ * Reads are sized to the room left under the high-water mark of the {@link InFlightLimiter}, and stop
+ * while it is paused: new entries wait in the stream, and entries in flight stay unacknowledged.
+ * Entries still being handled here are skipped when reclaimed, so that a slow handler does not run twice.
+ * The entries of one read (or one reclaim) are routed together, so that batched handlers get them at once.
+ */
+class StreamConsumer {
+
+    private final StreamCommands<String, String, byte[]> commands;
+    private final String key;
+    private final String group;
+    private final String consumer;
+    private final int batchSize;
+    private final Duration block;
+    private final Duration reclaimMinIdle;
+    private final Duration reclaimInterval;
+    private final Predicate<UserActionEvent> handles;
+    private final Function<List<UserActionEvent>, List<CompletableFuture<Void>>> handler;
+    private final InFlightLimiter limiter;
+    private final Logger logger;
+    private final Queue<StreamMessage<String, String, byte[]>> handled = new ConcurrentLinkedQueue<>();
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private Thread poller;
+    private volatile boolean running = true;
+
+    /**
+     * @param handles tells whether the service handles an event, the others are acknowledged right away
+     */
+    StreamConsumer(StreamCommands<String, String, byte[]> commands,
+                   String key,
+                   String group,
+                   String consumer,
+                   int batchSize,
+                   Duration block,
+                   Duration reclaimMinIdle,
+                   Duration reclaimInterval,
+                   Predicate<UserActionEvent> handles,
+                   Function<List<UserActionEvent>, List<CompletableFuture<Void>>> handler,
+                   InFlightLimiter limiter,
+                   Logger logger) {
+        this.commands = commands;
+        this.key = key;
+        this.group = group;
+        this.consumer = consumer;
+        this.batchSize = batchSize;
+        this.block = block;
+        this.reclaimMinIdle = reclaimMinIdle;
+        this.reclaimInterval = reclaimInterval;
+        this.handles = handles;
+        this.handler = handler;
+        this.limiter = limiter;
+        this.logger = logger;
+    }
+
+    /**
+     * Joins the group on the stream, creating it if needed, and starts reading if not yet started.
+     */
+    synchronized void start() {
+        if (poller != null) {
+            return;
+        }
+        try {
+            // Starts at the end of the stream: the group only receives events published from now on
+            commands.xgroupCreate(key, group, "$", new XGroupCreateArgs().mkstream());
+        } catch (Exception e) {
+            if (e.getMessage() == null || !e.getMessage().contains("BUSYGROUP")) {
+                throw e;
+            }
+        }
+        poller = new Thread(this::poll, "events-stream-" + group);
+        poller.setDaemon(true);
+        poller.start();
+        logger.infof("[STREAMS][SUBSCRIBE]: Group %s consuming %s as %s", group, key, consumer);
+    }
+
+    private void poll() {
+        long nextReclaim = System.nanoTime() + reclaimInterval.toNanos();
+        while (running) {
+            try {
+                acknowledge();
+                if (limiter.available() == 0) {
+                    limiter.awaitResume(block);
+                    continue;
+                }
+                if (System.nanoTime() - nextReclaim >= 0) {
+                    reclaim();
+                    nextReclaim = System.nanoTime() + reclaimInterval.toNanos();
+                }
+                int count = Math.min(batchSize, limiter.available());
+                if (count == 0) {
+                    continue;
+                }
+                List<StreamMessage<String, String, byte[]>> messages =
+                        commands.xreadgroup(group, consumer, Map.of(key, ">"), new XReadGroupArgs().count(count).block(block));
+                if (messages != null && !messages.isEmpty()) {
+                    handle(messages);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (Exception e) {
+                if (running) {
+                    logger.errorf("[STREAMS][READ]: Error reading %s for group %s: %s", key, group, e.getMessage());
+                    pause();
+                }
+            }
+        }
+        acknowledge();
+    }
+
+    private void reclaim() {
+        int count = Math.min(batchSize, limiter.available());
+        if (count == 0) {
+            return;
+        }
+        ClaimedMessages<String, String, byte[]> claimed =
+                commands.xautoclaim(key, group, consumer, reclaimMinIdle, "0-0", count);
+        // Entries of this consumer idle for long because their handler is still running (or retrying)
+        List<StreamMessage<String, String, byte[]>> reclaimed = claimed.getMessages().stream()
+                .filter(message -> !inFlight.contains(message.id()))
+                .toList();
+        if (!reclaimed.isEmpty()) {
+            logger.warnf("[STREAMS][RECLAIM]: Reclaimed %d pending events of %s for group %s",
+                    reclaimed.size(), key, group);
+            handle(reclaimed);
+        }
+    }
+
+    private void handle(List<StreamMessage<String, String, byte[]>> messages) {
+        List<StreamMessage<String, String, byte[]>> accepted = new ArrayList<>(messages.size());
+        List<UserActionEvent> events = new ArrayList<>(messages.size());
+        for (StreamMessage<String, String, byte[]> message : messages) {
+            byte[] payload = message.payload() == null ? null : message.payload().get(UserActionEventBus.EVENT_FIELD);
+            UserActionEvent event;
+            try {
+                event = EventCodecs.decode(payload);
+            } catch (RuntimeException e) {
+                // Deleted or malformed entry, nothing to retry
+                logger.errorf("[STREAMS][DECODE]: Dropping undecodable entry %s of %s: %s", message.id(), message.key(), e.getMessage());
+                handled.add(message);
+                continue;
+            }
+            if (!handles.test(event)) {
+                handled.add(message);
+                continue;
+            }
+            if (!limiter.tryAcquire()) {
+                // Left pending, reclaimed once there is room
+                continue;
+            }
+            if (!inFlight.add(message.id())) {
+                limiter.release();
+                continue;
+            }
+            accepted.add(message);
+            events.add(event);
+        }
+        if (events.isEmpty()) {
+            return;
+        }
+        List<CompletableFuture<Void>> handlings = handler.apply(events);
+        for (int i = 0; i < accepted.size(); i++) {
+            StreamMessage<String, String, byte[]> message = accepted.get(i);
+            handlings.get(i).whenComplete((result, error) -> {
+                limiter.release();
+                // Failed events stay pending and are reclaimed later. Handled ones stay in flight until
+                // acknowledged, so that a reclaim in between does not handle them again
+                if (error == null) {
+                    handled.add(message);
+                } else {
+                    inFlight.remove(message.id());
+                }
+            });
+        }
+    }
+
+    private void acknowledge() {
+        if (handled.isEmpty()) {
+            return;
+        }
+        List<String> ids = new ArrayList<>();
+        StreamMessage<String, String, byte[]> message;
+        while ((message = handled.poll()) != null) {
+            ids.add(message.id());
+        }
+        try {
+            commands.xack(key, group, ids.toArray(String[]::new));
+        } catch (Exception e) {
+            // Not acknowledged entries are reclaimed and handled again
+            logger.errorf("[STREAMS][ACK]: Error acknowledging events for group %s: %s", group, e.getMessage());
+        }
+        ids.forEach(inFlight::remove);
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(block.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    synchronized void stop() {
+        running = false;
+        if (poller == null) {
+            return;
+        }
+        try {
+            poller.join(block.toMillis() * 2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -41,6 +41,7 @@ public class UserActionEvent {
     private String postId; // Pour POST_DELETED, POST_CREATED, POST_LIKED
     private String postContent; // Pour POST_CREATED
     private Date timestamp;
+    private String eventId; // Unique per published event, set by the bus; used to skip redelivered events
 
     @Override
     public String toString() {
@@ -51,6 +52,7 @@ public class UserActionEvent {
                 ", postId='" + postId + '\'' +
                 ", postContent='" + postContent + '\'' +
                 ", timestamp=" + timestamp +
+                ", eventId='" + eventId + '\'' +
                 '}';
     }
 }
\ No newline at end of file
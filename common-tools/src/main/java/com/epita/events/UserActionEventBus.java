@@ -0,0 +1,215 @@
+package com.epita.events;
+
+import com.epita.events.codec.EventCodec;
+import com.epita.events.codec.EventCodecs;
+import com.epita.events.deadletter.DeadLetterStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.redis.datasource.pubsub.PubSubCommands;
+import io.quarkus.redis.datasource.stream.StreamCommands;
+import io.quarkus.redis.datasource.stream.XAddArgs;
+import io.vertx.mutiny.redis.client.Redis;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Publishes and delivers {@link UserActionEvent}s over Redis, with the transport chosen by
+ * {@code events.transport}:
+ * <ul>
+ *     <li>{@code pubsub} (default): one channel per action type, fire-and-forget. Events published
+ *     while a consumer is down are lost. A service holds a single subscription to all its channels.</li>
+ *     <li>{@code streams}: one Redis stream ({@code events:user-actions}) for all the action types, trimmed
+ *     to about {@code events.streams.max-len} entries, so that the events of a user are delivered in the
+ *     order they were published whatever their types. Each service reads through its own consumer group
+ *     ({@code quarkus.application.name}), shared by its replicas, in batches of {@code events.streams.batch-size}, and
+ *     acknowledges an event once it was handled, or right away when it has no handler in the service.
+ *     Events left pending (consumer crash, failed handler) are reclaimed after
+ *     {@code events.streams.reclaim-min-idle}.</li>
+ * </ul>
+ * Events are encoded with the codec named by {@code events.codec} (see {@link EventCodecs}).
+ * Handlers run on the {@link EventDispatcher}. At most {@code events.consumer.high-water-mark} events
+ * are in flight before the consumer stops reading (see {@link InFlightLimiter}); with pub/sub, events
+ * received past {@code events.consumer.max-in-flight} are dropped.
+ */
+@ApplicationScoped
+public class UserActionEventBus {
+    static final String STREAM_KEY = "events:user-actions";
+    static final String EVENT_FIELD = "event";
+
+    private final PubSubCommands<byte[]> pubsub;
+    private final StreamCommands<String, String, byte[]> streams;
+    private final EventCodec codec;
+    private final EventRouter router;
+    private final boolean useStreams;
+    private final XAddArgs addArgs;
+    private final StreamConsumer streamConsumer;
+    private final PubSubConsumer pubSubConsumer;
+    private final Set<String> channels = new LinkedHashSet<>();
+
+    public UserActionEventBus(RedisDataSource ds,
+                              Redis redis,
+                              MeterRegistry registry,
+                              EventDispatcher dispatcher,
+                              EventDeduplicator deduplicator,
+                              EventRetrier retrier,
+                              DeadLetterStore deadLetters,
+                              Logger logger,
+                              @ConfigProperty(name = "events.transport", defaultValue = "pubsub") String transport,
+                              @ConfigProperty(name = "events.codec", defaultValue = "json") String codec,
+                              @ConfigProperty(name = "quarkus.application.name") String applicationName,
+                              @ConfigProperty(name = "events.streams.max-len", defaultValue = "100000") long maxLen,
+                              @ConfigProperty(name = "events.streams.batch-size", defaultValue = "100") int batchSize,
+                              @ConfigProperty(name = "events.streams.block", defaultValue = "2S") Duration block,
+                              @ConfigProperty(name = "events.streams.reclaim-min-idle", defaultValue = "1M") Duration reclaimMinIdle,
+                              @ConfigProperty(name = "events.streams.reclaim-interval", defaultValue = "30S") Duration reclaimInterval,
+                              @ConfigProperty(name = "events.consumer.high-water-mark", defaultValue = "1000") int highWaterMark,
+                              @ConfigProperty(name = "events.consumer.max-in-flight", defaultValue = "2000") int maxInFlight) {
+        if (!"pubsub".equals(transport) && !"streams".equals(transport)) {
+            throw new IllegalArgumentException("Unknown events.transport: " + transport + " (expected pubsub or streams)");
+        }
+        this.pubsub = ds.pubsub(byte[].class);
+        this.streams = ds.stream(String.class, String.class, byte[].class);
+        this.codec = EventCodecs.forName(codec);
+        this.router = new EventRouter(dispatcher, deduplicator, retrier, deadLetters, logger);
+        this.useStreams = "streams".equals(transport);
+        this.addArgs = new XAddArgs().maxlen(maxLen).nearlyExactTrimming();
+        InFlightLimiter limiter = new InFlightLimiter(registry, transport, highWaterMark, maxInFlight);
+        if (useStreams) {
+            // Pod name in the cluster, so that a restarted pod is a new consumer and its pending entries get reclaimed
+            String hostname = System.getenv("HOSTNAME");
+            String consumerName = hostname != null ? hostname : UUID.randomUUID().toString();
+            this.streamConsumer = new StreamConsumer(streams, STREAM_KEY, applicationName, consumerName, batchSize, block,
+                    reclaimMinIdle, reclaimInterval, router::handles, router::routeAll, limiter, logger);
+            this.pubSubConsumer = null;
+        } else {
+            this.streamConsumer = null;
+            this.pubSubConsumer = new PubSubConsumer(redis, limiter, router::routeAll, logger);
+        }
+    }
+
+    /**
+     * Publishes an event, giving it a unique id if it has none.
+     *
+     * @param channel the channel of the event, i.e. the value of its action type
+     * @param event   the event to publish
+     */
+    public void publish(String channel, UserActionEvent event) {
+        if (event.getEventId() == null) {
+            event.setEventId(UUID.randomUUID().toString());
+        }
+        byte[] payload = codec.encode(event);
+        if (useStreams) {
+            streams.xadd(STREAM_KEY, addArgs, Map.of(EVENT_FIELD, payload));
+        } else {
+            pubsub.publish(channel, payload);
+        }
+    }
+
+    /**
+     * Subscribes a blocking handler to some action types. All the subscriptions of a service share one
+     * Redis subscription (pub/sub) or one consumer group reading the events stream (streams), and events
+     * are routed to the handlers by action type.
+     *
+     * @param actionTypes the action types to receive
+     * @param orderingKey gives the key of an event: events with the same key are handled in order
+     * @param handler     the handler, an exception marks the event as failed
+     * @return the subscription
+     */
+    public EventSubscription subscribe(Collection<UserActionEvent.ActionType> actionTypes,
+                                       Function<UserActionEvent, String> orderingKey,
+                                       Consumer<UserActionEvent> handler) {
+        EventRouter.Route route = new EventRouter.Route(handler.getClass().getName(), orderingKey, handler);
+        router.add(actionTypes, route);
+        listen(actionTypes);
+        return () -> {
+            router.remove(route);
+            if (router.isEmpty()) {
+                stopListening();
+            }
+        };
+    }
+
+    /**
+     * Subscribes a blocking handler to some action types, receiving at once all the events of these types
+     * delivered together: the entries of one XREADGROUP read (streams), or the messages of one read of the
+     * connection (pub/sub). Batches are only as large as the deliveries, nothing waits for more events.
+     * The keys of all the events of a batch are held while it is handled, and a batch is cut where an event
+     * of one of its keys goes to another handler, so that the order of each key is kept. A failed batch is
+     * retried as a whole, then each of its events is dead-lettered (and replayed) on its own. The class name of
+     * the handler identifies it in the dead letters: use a named class rather than a lambda.
+     *
+     * @param actionTypes the action types to receive
+     * @param orderingKey gives the key of an event: events with the same key are handled in order
+     * @param handler     the handler, receiving the events in delivery order; an exception marks them all as failed
+     * @return the subscription
+     */
+    public EventSubscription subscribeBatch(Collection<UserActionEvent.ActionType> actionTypes,
+                                            Function<UserActionEvent, String> orderingKey,
+                                            Consumer<List<UserActionEvent>> handler) {
+        EventRouter.Route route = new EventRouter.Route(handler.getClass().getName(), orderingKey, handler, true);
+        router.add(actionTypes, route);
+        listen(actionTypes);
+        return () -> {
+            router.remove(route);
+            if (router.isEmpty()) {
+                stopListening();
+            }
+        };
+    }
+
+    /**
+     * Handles a dead letter again with the handler that failed on it, once and without retries.
+     *
+     * @param handler the name of the handler, as stored in the dead letter
+     * @param event   the event to handle
+     * @return completed once handled, exceptionally if the handler is unknown or failed again
+     */
+    public CompletableFuture<Void> replay(String handler, UserActionEvent event) {
+        return router.find(handler)
+                .map(route -> router.replay(route, event))
+                .orElseGet(() -> CompletableFuture.failedFuture(
+                        new IllegalArgumentException("No handler " + handler + " in this service")));
+    }
+
+    private synchronized void listen(Collection<UserActionEvent.ActionType> actionTypes) {
+        if (useStreams) {
+            // The routes were added first: the consumer accepts the events of the new types from now on
+            streamConsumer.start();
+            return;
+        }
+        List<String> added = new ArrayList<>();
+        for (UserActionEvent.ActionType actionType : actionTypes) {
+            if (channels.add(actionType.getValue())) {
+                added.add(actionType.getValue());
+            }
+        }
+        if (!added.isEmpty()) {
+            pubSubConsumer.addChannels(added);
+        }
+    }
+
+    @PreDestroy
+    synchronized void stopListening() {
+        if (pubSubConsumer != null) {
+            pubSubConsumer.stop();
+        }
+        if (streamConsumer != null) {
+            streamConsumer.stop();
+        }
+        channels.clear();
+    }
+}
@@ -0,0 +1,216 @@
+package com.epita.events.codec;
+
+import com.epita.events.UserActionEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Compact binary layout of a {@link UserActionEvent}, version 1:
+ * <pre>
+ * version      1 byte  (1)
+ * action type  1 byte  (ordinal of ActionType: new action types must be added at the end)
+ * present      1 byte  bit set of the non-null fields, in the order below
+ * uuids        1 byte  bit set of the fields encoded as a UUID
+ * userId, username, targetId, targetUsername, postId, postContent
+ *              for each present field: 16 bytes if it is a canonical UUID, else varint length + UTF-8
+ * timestamp    varint epoch millis, if present (bit 6)
+ * eventId      as the other strings, if present (bit 7)
+ * </pre>
+ * No field names, no quoting, and the ids (UUIDs) take 16 bytes instead of 38.
+ */
+public class BinaryEventCodec implements EventCodec {
+    public static final byte VERSION = 1;
+
+    private static final int FIELDS = 6;
+    private static final int TIMESTAMP_BIT = 1 << FIELDS;
+    // Added after the first layout: older payloads simply do not have it
+    private static final int EVENT_ID = FIELDS + 1;
+    private static final UserActionEvent.ActionType[] ACTION_TYPES = UserActionEvent.ActionType.values();
+
+    @Override
+    public byte[] encode(UserActionEvent event) {
+        String[] fields = fieldsOf(event);
+        byte[][] encoded = new byte[EVENT_ID + 1][];
+        int present = 0;
+        int uuids = 0;
+        int size = 4;
+        for (int i = 0; i <= EVENT_ID; i++) {
+            if (i == FIELDS) {
+                continue;
+            }
+            if (fields[i] == null) {
+                continue;
+            }
+            present |= 1 << i;
+            if (isUuid(fields[i])) {
+                uuids |= 1 << i;
+                size += 16;
+            } else {
+                encoded[i] = fields[i].getBytes(StandardCharsets.UTF_8);
+                size += varintSize(encoded[i].length) + encoded[i].length;
+            }
+        }
+        if (event.getTimestamp() != null) {
+            present |= TIMESTAMP_BIT;
+            size += varintSize(event.getTimestamp().getTime());
+        }
+
+        Writer out = new Writer(size);
+        out.write(VERSION);
+        out.write(event.getActionType() == null ? -1 : event.getActionType().ordinal());
+        out.write(present);
+        out.write(uuids);
+        for (int i = 0; i < FIELDS; i++) {
+            writeField(out, fields[i], encoded[i], (uuids & (1 << i)) != 0);
+        }
+        if (event.getTimestamp() != null) {
+            out.writeVarint(event.getTimestamp().getTime());
+        }
+        writeField(out, fields[EVENT_ID], encoded[EVENT_ID], (uuids & (1 << EVENT_ID)) != 0);
+        return out.bytes;
+    }
+
+    @Override
+    public UserActionEvent decode(byte[] payload) {
+        Reader in = new Reader(payload);
+        int version = in.read();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported event format version: " + version);
+        }
+        int actionType = (byte) in.read();
+        int present = in.read();
+        int uuids = in.read();
+        String[] fields = new String[FIELDS];
+        for (int i = 0; i < FIELDS; i++) {
+            fields[i] = readField(in, present, uuids, i);
+        }
+        Date timestamp = (present & TIMESTAMP_BIT) != 0 ? new Date(in.readVarint()) : null;
+        String eventId = readField(in, present, uuids, EVENT_ID);
+        return new UserActionEvent(actionType < 0 ? null : ACTION_TYPES[actionType],
+                fields[0], fields[1], fields[2], fields[3], fields[4], fields[5], timestamp, eventId);
+    }
+
+    private static String[] fieldsOf(UserActionEvent event) {
+        return new String[] {
+                event.getUserId(), event.getUsername(), event.getTargetId(),
+                event.getTargetUsername(), event.getPostId(), event.getPostContent(),
+                null, event.getEventId()
+        };
+    }
+
+    private static void writeField(Writer out, String value, byte[] encoded, boolean uuid) {
+        if (uuid) {
+            UUID parsed = UUID.fromString(value);
+            out.writeLong(parsed.getMostSignificantBits());
+            out.writeLong(parsed.getLeastSignificantBits());
+        } else if (encoded != null) {
+            out.writeVarint(encoded.length);
+            out.write(encoded);
+        }
+    }
+
+    private static String readField(Reader in, int present, int uuids, int field) {
+        if ((present & (1 << field)) == 0) {
+            return null;
+        }
+        if ((uuids & (1 << field)) != 0) {
+            return new UUID(in.readLong(), in.readLong()).toString();
+        }
+        int length = (int) in.readVarint();
+        String value = new String(in.bytes, in.position, length, StandardCharsets.UTF_8);
+        in.position += length;
+        return value;
+    }
+
+    /**
+     * @return true if the value is a lower-case canonical UUID, i.e. survives a round trip through {@link UUID}
+     */
+    private static boolean isUuid(String value) {
+        if (value.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = value.charAt(i);
+            boolean dash = i == 8 || i == 13 || i == 18 || i == 23;
+            if (dash ? c != '-' : !((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static final class Writer {
+        private final byte[] bytes;
+        private int position;
+
+        private Writer(int size) {
+            this.bytes = new byte[size];
+        }
+
+        private void write(int value) {
+            bytes[position++] = (byte) value;
+        }
+
+        private void write(byte[] value) {
+            System.arraycopy(value, 0, bytes, position, value.length);
+            position += value.length;
+        }
+
+        private void writeLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[position++] = (byte) value;
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] bytes;
+        private int position;
+
+        private Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private int read() {
+            return bytes[position++] & 0xFF;
+        }
+
+        private long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (bytes[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        private long readVarint() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.epita.events.codec;
+
+import com.epita.events.UserActionEvent;
+
+/**
+ * Wire format of {@link UserActionEvent}s.
+ */
+public interface EventCodec {
+
+    byte[] encode(UserActionEvent event);
+
+    UserActionEvent decode(byte[] payload);
+}
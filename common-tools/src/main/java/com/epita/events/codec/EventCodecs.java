@@ -0,0 +1,32 @@
+package com.epita.events.codec;
+
+import com.epita.events.UserActionEvent;
+
+/**
+ * Codec selection. Events are encoded with the codec named by {@code events.codec} ({@code json} or
+ * {@code binary}) and decoded with whichever codec matches their first byte: '{' for JSON, the version
+ * byte for the binary layout. Consumers therefore read both formats, and publishers can be switched one
+ * service at a time once every consumer runs this code.
+ */
+public final class EventCodecs {
+    public static final JsonEventCodec JSON = new JsonEventCodec();
+    public static final BinaryEventCodec BINARY = new BinaryEventCodec();
+
+    private EventCodecs() {
+    }
+
+    public static EventCodec forName(String name) {
+        return switch (name) {
+            case "json" -> JSON;
+            case "binary" -> BINARY;
+            default -> throw new IllegalArgumentException("Unknown events.codec: " + name + " (expected json or binary)");
+        };
+    }
+
+    public static UserActionEvent decode(byte[] payload) {
+        if (payload == null || payload.length == 0) {
+            throw new IllegalArgumentException("Empty event payload");
+        }
+        return payload[0] == BinaryEventCodec.VERSION ? BINARY.decode(payload) : JSON.decode(payload);
+    }
+}
@@ -0,0 +1,35 @@
+package com.epita.events.codec;
+
+import com.epita.events.UserActionEvent;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Jackson JSON, as published before the binary codec existed (dates as epoch millis).
+ */
+public class JsonEventCodec implements EventCodec {
+
+    private final ObjectMapper mapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    @Override
+    public byte[] encode(UserActionEvent event) {
+        try {
+            return mapper.writeValueAsBytes(event);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public UserActionEvent decode(byte[] payload) {
+        try {
+            return mapper.readValue(payload, UserActionEvent.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
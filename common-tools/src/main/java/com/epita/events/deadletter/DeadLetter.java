@@ -0,0 +1,25 @@
+package com.epita.events.deadletter;
+
+import com.epita.events.UserActionEvent;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Date;
+
+/**
+ * Event whose handling still failed after every retry.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class DeadLetter {
+    private String id;       // ID of the entry in the dead-letter stream
+    private String handler;  // handler that failed
+    private int attempts;
+    private String error;    // message of the last failure
+    private Date failedAt;
+    private UserActionEvent event;
+}
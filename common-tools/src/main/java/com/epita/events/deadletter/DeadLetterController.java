@@ -0,0 +1,100 @@
+package com.epita.events.deadletter;
+
+import com.epita.events.UserActionEventBus;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * REST controller to inspect and replay the dead letters of the service, shared by every service
+ * subscribing to user action events.
+ */
+@Path("/events/dead-letters")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class DeadLetterController {
+
+    private static final int MAX_COUNT = 1000;
+
+    @Inject
+    DeadLetterStore deadLetterStore;
+
+    @Inject
+    UserActionEventBus eventBus;
+
+    @Inject
+    Logger logger;
+
+    @Operation(summary = "List dead letters",
+            description = "Retrieve the oldest events whose handling failed after every retry")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description = "Dead letters retrieved successfully"),
+            @APIResponse(responseCode = "400", description = "Invalid count")
+    })
+    @GET
+    public Response getDeadLetters(@QueryParam("count") @DefaultValue("100") int count) {
+        if (count <= 0 || count > MAX_COUNT) {
+            logger.error("[GET DEAD LETTERS][CONTROLLER]: count is not between 1 and " + MAX_COUNT);
+            return Response.status(Response.Status.BAD_REQUEST).entity("Count must be between 1 and " + MAX_COUNT).build();
+        }
+        return Response.ok(deadLetterStore.findOldest(count)).build();
+    }
+
+    @Operation(summary = "Replay dead letters",
+            description = "Handle the oldest dead letters again, removing those handled successfully")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description = "Dead letters replayed"),
+            @APIResponse(responseCode = "400", description = "Invalid count")
+    })
+    @POST
+    @Path("/replay")
+    public Response replay(@QueryParam("count") @DefaultValue("100") int count) {
+        if (count <= 0 || count > MAX_COUNT) {
+            logger.error("[REPLAY DEAD LETTERS][CONTROLLER]: count is not between 1 and " + MAX_COUNT);
+            return Response.status(Response.Status.BAD_REQUEST).entity("Count must be between 1 and " + MAX_COUNT).build();
+        }
+
+        List<DeadLetter> deadLetters = deadLetterStore.findOldest(count);
+        List<CompletableFuture<Void>> replays = new ArrayList<>();
+        for (DeadLetter deadLetter : deadLetters) {
+            replays.add(eventBus.replay(deadLetter.getHandler(), deadLetter.getEvent()));
+        }
+
+        List<String> replayed = new ArrayList<>();
+        for (int i = 0; i < deadLetters.size(); i++) {
+            try {
+                replays.get(i).join();
+                replayed.add(deadLetters.get(i).getId());
+            } catch (CompletionException e) {
+                logger.warn("[REPLAY DEAD LETTERS][CONTROLLER]: Dead letter " + deadLetters.get(i).getId()
+                        + " failed again: " + e.getCause().getMessage());
+            }
+        }
+        deadLetterStore.delete(replayed);
+
+        int failed = deadLetters.size() - replayed.size();
+        logger.info("[REPLAY DEAD LETTERS][CONTROLLER]: Replayed " + replayed.size() + " dead letters, " + failed + " failed");
+        return Response.ok(new DeadLetterReplayResponse(replayed.size(), failed, deadLetterStore.count())).build();
+    }
+
+    @Operation(summary = "Delete a dead letter",
+            description = "Drop a dead letter that must not be replayed")
+    @APIResponse(responseCode = "204", description = "Dead letter deleted")
+    @DELETE
+    @Path("/{id}")
+    public Response deleteDeadLetter(@PathParam("id") String id) {
+        logger.info("[DELETE DEAD LETTER][CONTROLLER]: Deleting dead letter " + id);
+        deadLetterStore.delete(List.of(id));
+        return Response.noContent().build();
+    }
+}
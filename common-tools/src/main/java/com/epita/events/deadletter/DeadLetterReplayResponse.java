@@ -0,0 +1,16 @@
+package com.epita.events.deadletter;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class DeadLetterReplayResponse {
+    private int replayed;  // handled successfully and removed from the dead letters
+    private int failed;    // failed again, kept in the dead letters
+    private long remaining;
+}
@@ -0,0 +1,85 @@
+package com.epita.events.deadletter;
+
+import com.epita.events.UserActionEvent;
+import com.epita.events.codec.EventCodecs;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.redis.datasource.stream.StreamCommands;
+import io.quarkus.redis.datasource.stream.StreamMessage;
+import io.quarkus.redis.datasource.stream.StreamRange;
+import io.quarkus.redis.datasource.stream.XAddArgs;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dead letters of a service, kept in the Redis stream {@code events:dead-letters:<quarkus.application.name>}
+ * (oldest first, trimmed to about {@code events.dead-letters.max-len} entries). The event is stored as
+ * JSON so that the stream can be read with redis-cli.
+ */
+@ApplicationScoped
+public class DeadLetterStore {
+    private static final String KEY_PREFIX = "events:dead-letters:";
+
+    private final StreamCommands<String, String, String> streams;
+    private final String key;
+    private final XAddArgs addArgs;
+    private final Counter deadLetters;
+
+    public DeadLetterStore(RedisDataSource ds,
+                           MeterRegistry registry,
+                           @ConfigProperty(name = "quarkus.application.name") String applicationName,
+                           @ConfigProperty(name = "events.dead-letters.max-len", defaultValue = "100000") long maxLen) {
+        this.streams = ds.stream(String.class, String.class, String.class);
+        this.key = KEY_PREFIX + applicationName;
+        this.addArgs = new XAddArgs().maxlen(maxLen).nearlyExactTrimming();
+        this.deadLetters = Counter.builder("events.dead_letters")
+                .description("Events moved to the dead letters after their last failed attempt")
+                .register(registry);
+    }
+
+    public void add(String handler, UserActionEvent event, Throwable error, int attempts) {
+        streams.xadd(key, addArgs, Map.of(
+                "handler", handler,
+                "attempts", Integer.toString(attempts),
+                "error", String.valueOf(error.getMessage()),
+                "failedAt", Long.toString(System.currentTimeMillis()),
+                "event", new String(EventCodecs.JSON.encode(event), StandardCharsets.UTF_8)));
+        deadLetters.increment();
+    }
+
+    /**
+     * @param count maximum number of dead letters to return
+     * @return the oldest dead letters
+     */
+    public List<DeadLetter> findOldest(int count) {
+        List<DeadLetter> found = new ArrayList<>();
+        for (StreamMessage<String, String, String> message : streams.xrange(key, StreamRange.of("-", "+"), count)) {
+            Map<String, String> fields = message.payload();
+            found.add(new DeadLetter(message.id(),
+                    fields.get("handler"),
+                    Integer.parseInt(fields.getOrDefault("attempts", "0")),
+                    fields.get("error"),
+                    new Date(Long.parseLong(fields.getOrDefault("failedAt", "0"))),
+                    EventCodecs.JSON.decode(fields.get("event").getBytes(StandardCharsets.UTF_8))));
+        }
+        return found;
+    }
+
+    public long count() {
+        return streams.xlen(key);
+    }
+
+    public void delete(Collection<String> ids) {
+        if (!ids.isEmpty()) {
+            streams.xdel(key, ids.toArray(String[]::new));
+        }
+    }
+}
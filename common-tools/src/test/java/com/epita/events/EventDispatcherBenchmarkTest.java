@@ -0,0 +1,108 @@
+package com.epita.events;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the events/second and the p99 handling latency (from reception to the end of the handler)
+ * of the Vert.x worker pool, as the subscribers used it, and of the {@link EventDispatcher}. Handlers
+ * simulate a blocking database call. Events are received on a Vert.x event loop, like Redis messages.
+ * Run with {@code mvn test -Dbenchmark=true [-Dbenchmark.events=N] [-Dbenchmark.io-millis=N]}; the results
+ * are published as report entries of the test (surefire XML reports).
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class EventDispatcherBenchmarkTest {
+
+    private static final int EVENTS = Integer.getInteger("benchmark.events", 2_000);
+    private static final int IO_MILLIS = Integer.getInteger("benchmark.io-millis", 5);
+    private static final int USERS = 500;
+
+    @Test
+    public void testWorkerPoolVersusDispatcher(TestReporter reporter) throws Exception {
+        Vertx vertx = Vertx.vertx();
+        try {
+            // Two-argument executeBlocking, as in the subscribers: ordered on the event loop context
+            Result ordered = run(vertx, reporter, "worker pool (ordered)", (user, task) ->
+                    vertx.executeBlocking(promise -> {
+                        task.run();
+                        promise.complete();
+                    }, res -> { }));
+            Result unordered = run(vertx, reporter, "worker pool (unordered)", (user, task) ->
+                    vertx.executeBlocking(promise -> {
+                        task.run();
+                        promise.complete();
+                    }, false, res -> { }));
+
+            EventDispatcher dispatcher = new EventDispatcher(64, true, Duration.ofSeconds(10), new SimpleMeterRegistry(), Logger.getLogger(EventDispatcher.class));
+            String threads = dispatcher.usesVirtualThreads() ? "virtual threads" : "platform threads";
+            Result dispatched;
+            try {
+                dispatched = run(vertx, reporter, "dispatcher, " + threads, dispatcher::dispatch);
+            } finally {
+                dispatcher.shutdown();
+            }
+
+            assertTrue(dispatched.eventsPerSecond > ordered.eventsPerSecond);
+            assertTrue(unordered.eventsPerSecond > ordered.eventsPerSecond);
+        } finally {
+            vertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private record Result(double eventsPerSecond, double p99Millis) {
+    }
+
+    private static Result run(Vertx vertx, TestReporter reporter, String name, BiConsumer<String, Runnable> executor)
+            throws InterruptedException {
+        long[] latencies = new long[EVENTS];
+        CountDownLatch done = new CountDownLatch(EVENTS);
+        Context context = vertx.getOrCreateContext();
+
+        long start = System.nanoTime();
+        context.runOnContext(v -> {
+            for (int i = 0; i < EVENTS; i++) {
+                int event = i;
+                long received = System.nanoTime();
+                executor.accept("user-" + (i % USERS), () -> {
+                    simulateBlockingCall();
+                    latencies[event] = System.nanoTime() - received;
+                    done.countDown();
+                });
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.MINUTES));
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        Result result = new Result(EVENTS / (elapsed / 1e9), latencies[(int) (EVENTS * 0.99) - 1] / 1e6);
+        reporter.publishEntry(Map.of(
+                "executor", name,
+                "events", Integer.toString(EVENTS),
+                "ioMillis", Integer.toString(IO_MILLIS),
+                "eventsPerSecond", String.format("%.0f", result.eventsPerSecond),
+                "p99Millis", String.format("%.1f", result.p99Millis)));
+        return result;
+    }
+
+    private static void simulateBlockingCall() {
+        try {
+            Thread.sleep(IO_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
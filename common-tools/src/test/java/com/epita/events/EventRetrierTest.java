@@ -0,0 +1,54 @@
+package com.epita.events;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventRetrierTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final EventRetrier retrier = new EventRetrier(registry, Logger.getLogger(EventRetrierTest.class),
+            3, Duration.ofMillis(100), Duration.ofSeconds(1));
+
+    @AfterEach
+    public void tearDown() {
+        retrier.shutdown();
+    }
+
+    @Test
+    public void testAttemptsAreCapped() {
+        assertTrue(retrier.shouldRetry(1));
+        assertTrue(retrier.shouldRetry(2));
+        assertFalse(retrier.shouldRetry(3));
+    }
+
+    @Test
+    public void testBackoffDoublesUpToMax() {
+        for (int i = 0; i < 100; i++) {
+            assertBetween(80, 120, retrier.backoffMillis(1));
+            assertBetween(160, 240, retrier.backoffMillis(2));
+            assertBetween(320, 480, retrier.backoffMillis(3));
+            assertBetween(800, 1200, retrier.backoffMillis(5));
+            assertBetween(800, 1200, retrier.backoffMillis(60));
+        }
+    }
+
+    @Test
+    public void testScheduleRunsRetry() throws InterruptedException {
+        CountDownLatch retried = new CountDownLatch(1);
+        retrier.schedule(1, retried::countDown);
+        assertTrue(retried.await(2, TimeUnit.SECONDS));
+        assertEquals(1.0, registry.counter("events.retries").count());
+    }
+
+    private static void assertBetween(long min, long max, long actual) {
+        assertTrue(actual >= min && actual <= max, actual + " not in [" + min + ", " + max + "]");
+    }
+}
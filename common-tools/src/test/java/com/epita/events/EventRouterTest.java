@@ -0,0 +1,149 @@
+package com.epita.events;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventRouterTest {
+
+    private static final Logger LOGGER = Logger.getLogger(EventRouterTest.class);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final EventDispatcher dispatcher = new EventDispatcher(8, false, Duration.ofSeconds(1), registry, LOGGER);
+    private final EventRetrier retrier = new EventRetrier(registry, LOGGER, 3, Duration.ofMillis(50), Duration.ofMillis(50));
+    // In-memory deduplication only, dead letters are not reached
+    private final EventDeduplicator deduplicator = new EventDeduplicator(null, registry, LOGGER, "test", 100, false,
+            Duration.ofHours(1), Duration.ofSeconds(30));
+    private final EventRouter router = new EventRouter(dispatcher, deduplicator, retrier, null, LOGGER);
+
+    @AfterEach
+    public void shutdown() {
+        retrier.shutdown();
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testRetriedEventIsAppliedBeforeLaterEventsOfItsKey() throws Exception {
+        List<UserActionEvent.ActionType> applied = new CopyOnWriteArrayList<>();
+        AtomicInteger createAttempts = new AtomicInteger();
+        router.add(List.of(UserActionEvent.ActionType.POST_CREATED, UserActionEvent.ActionType.POST_DELETED),
+                new EventRouter.Route("test", UserActionEvent::getUsername, event -> {
+                    if (event.getActionType() == UserActionEvent.ActionType.POST_CREATED && createAttempts.incrementAndGet() == 1) {
+                        throw new IllegalStateException("Neo4j down");
+                    }
+                    applied.add(event.getActionType());
+                }));
+
+        CompletableFuture<Void> created = router.route(event("1", UserActionEvent.ActionType.POST_CREATED));
+        CompletableFuture<Void> deleted = router.route(event("2", UserActionEvent.ActionType.POST_DELETED));
+        CompletableFuture.allOf(created, deleted).get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, createAttempts.get());
+        assertEquals(List.of(UserActionEvent.ActionType.POST_CREATED, UserActionEvent.ActionType.POST_DELETED), applied);
+    }
+
+    @Test
+    public void testBatchedRouteReceivesTheEventsOfOneDelivery() throws Exception {
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+        router.add(List.of(UserActionEvent.ActionType.POST_CREATED),
+                new EventRouter.Route("batch", UserActionEvent::getUsername,
+                        events -> batches.add(events.stream().map(UserActionEvent::getEventId).toList()), true));
+
+        List<CompletableFuture<Void>> handled = router.routeAll(List.of(
+                event("1", UserActionEvent.ActionType.POST_CREATED, "alice"),
+                event("2", UserActionEvent.ActionType.POST_CREATED, "bob"),
+                event("3", UserActionEvent.ActionType.POST_CREATED, "alice")));
+        CompletableFuture.allOf(handled.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(List.of("1", "2", "3")), batches);
+    }
+
+    @Test
+    public void testBatchIsCutWhereAnotherRouteTakesOneOfItsKeys() throws Exception {
+        List<String> applied = new CopyOnWriteArrayList<>();
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        router.add(List.of(UserActionEvent.ActionType.POST_CREATED),
+                new EventRouter.Route("batch", UserActionEvent::getUsername, events -> {
+                    batchSizes.add(events.size());
+                    events.forEach(event -> applied.add(event.getEventId()));
+                }, true));
+        router.add(List.of(UserActionEvent.ActionType.POST_DELETED),
+                new EventRouter.Route("single", UserActionEvent::getUsername, event -> applied.add(event.getEventId())));
+
+        List<CompletableFuture<Void>> handled = router.routeAll(List.of(
+                event("1", UserActionEvent.ActionType.POST_CREATED, "alice"),
+                event("2", UserActionEvent.ActionType.POST_CREATED, "bob"),
+                event("3", UserActionEvent.ActionType.POST_DELETED, "alice"),
+                event("4", UserActionEvent.ActionType.POST_CREATED, "alice")));
+        CompletableFuture.allOf(handled.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(2, 1), batchSizes);
+        assertTrue(applied.indexOf("1") < applied.indexOf("3"));
+        assertTrue(applied.indexOf("3") < applied.indexOf("4"));
+    }
+
+    @Test
+    public void testFailedBatchIsRetriedAsAWhole() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        List<List<String>> applied = new CopyOnWriteArrayList<>();
+        router.add(List.of(UserActionEvent.ActionType.POST_CREATED),
+                new EventRouter.Route("batch", UserActionEvent::getUsername, events -> {
+                    if (attempts.incrementAndGet() == 1) {
+                        throw new IllegalStateException("Neo4j down");
+                    }
+                    applied.add(events.stream().map(UserActionEvent::getEventId).toList());
+                }, true));
+
+        List<CompletableFuture<Void>> handled = router.routeAll(List.of(
+                event("1", UserActionEvent.ActionType.POST_CREATED, "alice"),
+                event("2", UserActionEvent.ActionType.POST_CREATED, "bob")));
+        CompletableFuture.allOf(handled.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, attempts.get());
+        assertEquals(List.of(List.of("1", "2")), applied);
+    }
+
+    @Test
+    public void testRetryRejectedAtShutdownReleasesTheKey() throws Exception {
+        List<String> applied = new CopyOnWriteArrayList<>();
+        router.add(List.of(UserActionEvent.ActionType.POST_CREATED),
+                new EventRouter.Route("test", UserActionEvent::getUsername, event -> {
+                    if (event.getEventId().equals("1")) {
+                        throw new IllegalStateException("Neo4j down");
+                    }
+                    applied.add(event.getEventId());
+                }));
+        retrier.shutdown();
+
+        CompletableFuture<Void> failed = router.route(event("1", UserActionEvent.ActionType.POST_CREATED));
+        CompletableFuture<Void> next = router.route(event("2", UserActionEvent.ActionType.POST_CREATED));
+
+        // Left unacknowledged, to be reclaimed after the restart
+        assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        next.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("2"), applied);
+    }
+
+    private static UserActionEvent event(String eventId, UserActionEvent.ActionType actionType) {
+        return event(eventId, actionType, "alice");
+    }
+
+    private static UserActionEvent event(String eventId, UserActionEvent.ActionType actionType, String username) {
+        UserActionEvent event = new UserActionEvent();
+        event.setEventId(eventId);
+        event.setActionType(actionType);
+        event.setUsername(username);
+        return event;
+    }
+}
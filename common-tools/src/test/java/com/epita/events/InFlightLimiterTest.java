@@ -0,0 +1,68 @@
+package com.epita.events;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InFlightLimiterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final InFlightLimiter limiter = new InFlightLimiter(registry, "pubsub", 4, 6);
+    private final AtomicInteger pauses = new AtomicInteger();
+    private final AtomicInteger resumes = new AtomicInteger();
+
+    {
+        limiter.onSaturation(pauses::incrementAndGet, resumes::incrementAndGet);
+    }
+
+    @Test
+    public void testPausesAtHighWaterMarkAndResumesAtHalf() {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        assertFalse(limiter.isPaused());
+        assertEquals(1, limiter.available());
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.isPaused());
+        assertEquals(0, limiter.available());
+        assertEquals(1, pauses.get());
+
+        limiter.release();
+        assertTrue(limiter.isPaused());
+        limiter.release();
+        assertFalse(limiter.isPaused());
+        assertEquals(1, resumes.get());
+        assertEquals(2, limiter.available());
+        assertEquals(2.0, registry.get("events.consumer.in_flight").gauge().value());
+    }
+
+    @Test
+    public void testRejectsPastCapacity() {
+        for (int i = 0; i < 6; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        assertFalse(limiter.tryAcquire());
+        assertEquals(1.0, registry.get("events.consumer.rejected").counter().count());
+        assertEquals(1, pauses.get());
+    }
+
+    @Test
+    public void testAwaitResume() throws InterruptedException {
+        for (int i = 0; i < 4; i++) {
+            limiter.tryAcquire();
+        }
+        Thread releaser = new Thread(() -> {
+            limiter.release();
+            limiter.release();
+        });
+        releaser.start();
+        limiter.awaitResume(Duration.ofSeconds(2));
+        assertFalse(limiter.isPaused());
+        releaser.join();
+    }
+}
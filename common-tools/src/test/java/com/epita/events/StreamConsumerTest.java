@@ -0,0 +1,167 @@
+package com.epita.events;
+
+import com.epita.events.codec.EventCodecs;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.quarkus.redis.datasource.stream.ClaimedMessages;
+import io.quarkus.redis.datasource.stream.StreamCommands;
+import io.quarkus.redis.datasource.stream.StreamMessage;
+import io.quarkus.redis.datasource.stream.XReadGroupArgs;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamConsumerTest {
+
+    private static final Logger LOGGER = Logger.getLogger(StreamConsumerTest.class);
+    private static final String STREAM = "events:user-actions";
+
+    // The entries of the stream, in publication order, and the ones delivered but not acknowledged
+    private final List<StreamMessage<String, String, byte[]>> entries = new CopyOnWriteArrayList<>();
+    private final List<StreamMessage<String, String, byte[]>> delivered = new CopyOnWriteArrayList<>();
+    private final List<Integer> reads = new CopyOnWriteArrayList<>();
+    private final List<CompletableFuture<Void>> handlings = new CopyOnWriteArrayList<>();
+    private int next;
+
+    @Test
+    public void testReadsStayUnderTheLimitAndSkipEntriesInFlight() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            publish(event(UserActionEvent.ActionType.POST_CREATED, "user"));
+        }
+        // Room for 2 events
+        InFlightLimiter limiter = new InFlightLimiter(new SimpleMeterRegistry(), "streams", 2, 4);
+        StreamConsumer consumer = new StreamConsumer(commands(), STREAM, "group", "consumer", 100, Duration.ofMillis(10),
+                Duration.ofMillis(1), Duration.ZERO, event -> true, events -> events.stream().map(event -> {
+                    CompletableFuture<Void> handling = new CompletableFuture<>();
+                    handlings.add(handling);
+                    return handling;
+                }).toList(), limiter, LOGGER);
+        consumer.start();
+        try {
+            awaitTrue(() -> handlings.size() == 2);
+            assertEquals(2, reads.get(0));
+            // Reclaims return the entries being handled, which must not be handled again
+            Thread.sleep(100);
+            assertEquals(2, handlings.size());
+
+            handlings.forEach(handling -> handling.complete(null));
+            awaitTrue(() -> handlings.size() == 4);
+            handlings.forEach(handling -> handling.complete(null));
+            awaitTrue(delivered::isEmpty);
+        } finally {
+            consumer.stop();
+        }
+    }
+
+    @Test
+    public void testEventsOfAUserKeepTheirOrderAcrossReadsAndTypes() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        EventDispatcher dispatcher = new EventDispatcher(8, false, Duration.ofSeconds(1), registry, LOGGER);
+        EventRetrier retrier = new EventRetrier(registry, LOGGER, 3, Duration.ofMillis(50), Duration.ofMillis(50));
+        EventDeduplicator deduplicator = new EventDeduplicator(null, registry, LOGGER, "test", 100, false,
+                Duration.ofHours(1), Duration.ofSeconds(30));
+        EventRouter router = new EventRouter(dispatcher, deduplicator, retrier, null, LOGGER);
+        List<UserActionEvent.ActionType> applied = new CopyOnWriteArrayList<>();
+        router.add(List.of(UserActionEvent.ActionType.POST_CREATED, UserActionEvent.ActionType.POST_DELETED),
+                new EventRouter.Route("test", UserActionEvent::getUsername, event -> {
+                    if (event.getActionType() == UserActionEvent.ActionType.POST_CREATED) {
+                        // Still running when the deletion is read
+                        sleep(200);
+                    }
+                    applied.add(event.getActionType());
+                }));
+
+        publish(event(UserActionEvent.ActionType.POST_CREATED, "alice"));
+        // Not handled by the service: acknowledged without being routed
+        publish(event(UserActionEvent.ActionType.USER_FOLLOWED, "alice"));
+        publish(event(UserActionEvent.ActionType.POST_DELETED, "alice"));
+
+        // One entry per read, so that the creation and the deletion arrive in separate reads
+        InFlightLimiter limiter = new InFlightLimiter(registry, "streams", 10, 20);
+        StreamConsumer consumer = new StreamConsumer(commands(), STREAM, "group", "consumer", 1, Duration.ofMillis(10),
+                Duration.ofMinutes(1), Duration.ofMinutes(1), router::handles, router::routeAll, limiter, LOGGER);
+        consumer.start();
+        try {
+            awaitTrue(() -> applied.size() == 2);
+            assertEquals(List.of(UserActionEvent.ActionType.POST_CREATED, UserActionEvent.ActionType.POST_DELETED), applied);
+            assertTrue(reads.size() >= 3);
+            awaitTrue(delivered::isEmpty);
+        } finally {
+            consumer.stop();
+            retrier.shutdown();
+            dispatcher.shutdown();
+        }
+    }
+
+    private void publish(UserActionEvent event) {
+        entries.add(new StreamMessage<>(STREAM, (entries.size() + 1) + "-0",
+                Map.of(UserActionEventBus.EVENT_FIELD, EventCodecs.JSON.encode(event))));
+    }
+
+    @SuppressWarnings("unchecked")
+    private StreamCommands<String, String, byte[]> commands() {
+        return (StreamCommands<String, String, byte[]>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{StreamCommands.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "xreadgroup" -> read((Map<String, String>) args[2], (XReadGroupArgs) args[3]);
+                    // Every delivered entry is idle for long enough to be reclaimed
+                    case "xautoclaim" -> new ClaimedMessages<>("0-0", List.copyOf(delivered));
+                    case "xack" -> {
+                        assertEquals(STREAM, args[0]);
+                        List<String> ids = List.of((String[]) args[2]);
+                        delivered.removeIf(message -> ids.contains(message.id()));
+                        yield ids.size();
+                    }
+                    default -> null;
+                });
+    }
+
+    private List<StreamMessage<String, String, byte[]>> read(Map<String, String> lastIds, XReadGroupArgs args) {
+        assertEquals(Map.of(STREAM, ">"), lastIds);
+        List<String> toArgs = args.toArgs();
+        int count = Integer.parseInt(toArgs.get(toArgs.indexOf("COUNT") + 1));
+        List<StreamMessage<String, String, byte[]>> messages = new ArrayList<>();
+        while (messages.size() < count && next < entries.size()) {
+            messages.add(entries.get(next++));
+        }
+        if (messages.isEmpty()) {
+            // Blocks like XREADGROUP on an empty stream
+            sleep(10);
+            return messages;
+        }
+        reads.add(messages.size());
+        delivered.addAll(messages);
+        return messages;
+    }
+
+    private static UserActionEvent event(UserActionEvent.ActionType actionType, String username) {
+        UserActionEvent event = new UserActionEvent();
+        event.setActionType(actionType);
+        event.setUsername(username);
+        return event;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitTrue(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
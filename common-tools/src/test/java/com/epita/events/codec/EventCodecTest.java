@@ -0,0 +1,66 @@
+package com.epita.events.codec;
+
+import com.epita.events.UserActionEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EventCodecTest {
+
+    private static UserActionEvent fullEvent() {
+        return new UserActionEvent(UserActionEvent.ActionType.USER_FOLLOWED,
+                UUID.randomUUID().toString(), "alice", UUID.randomUUID().toString(), "bob",
+                UUID.randomUUID().toString(), "Hello, wörld 😀", new Date(1_700_000_000_123L),
+                UUID.randomUUID().toString());
+    }
+
+    private static void assertSameEvent(UserActionEvent expected, UserActionEvent actual) {
+        assertEquals(expected.getActionType(), actual.getActionType());
+        assertEquals(expected.getUserId(), actual.getUserId());
+        assertEquals(expected.getUsername(), actual.getUsername());
+        assertEquals(expected.getTargetId(), actual.getTargetId());
+        assertEquals(expected.getTargetUsername(), actual.getTargetUsername());
+        assertEquals(expected.getPostId(), actual.getPostId());
+        assertEquals(expected.getPostContent(), actual.getPostContent());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getEventId(), actual.getEventId());
+    }
+
+    @Test
+    public void testBinaryRoundTrip() {
+        UserActionEvent event = fullEvent();
+        byte[] payload = EventCodecs.BINARY.encode(event);
+        assertEquals(BinaryEventCodec.VERSION, payload[0]);
+        assertSameEvent(event, EventCodecs.BINARY.decode(payload));
+    }
+
+    @Test
+    public void testBinaryRoundTripWithNullsAndNonUuidIds() {
+        // Upper-case or legacy ids must come back unchanged, not normalized by UUID
+        UserActionEvent event = new UserActionEvent(UserActionEvent.ActionType.POST_DELETED,
+                null, "alice", null, null, UUID.randomUUID().toString().toUpperCase(), null, null, "event-1");
+        assertSameEvent(event, EventCodecs.BINARY.decode(EventCodecs.BINARY.encode(event)));
+
+        event.setPostId("not-a-uuid");
+        assertSameEvent(event, EventCodecs.BINARY.decode(EventCodecs.BINARY.encode(event)));
+    }
+
+    @Test
+    public void testDecodeDetectsFormat() {
+        UserActionEvent event = fullEvent();
+        assertSameEvent(event, EventCodecs.decode(EventCodecs.JSON.encode(event)));
+        assertSameEvent(event, EventCodecs.decode(EventCodecs.BINARY.encode(event)));
+        assertTrue(EventCodecs.BINARY.encode(event).length < EventCodecs.JSON.encode(event).length);
+    }
+
+    @Test
+    public void testUnknownVersion() {
+        byte[] payload = EventCodecs.BINARY.encode(fullEvent());
+        payload[0] = 2;
+        assertThrows(IllegalArgumentException.class, () -> EventCodecs.BINARY.decode(payload));
+        assertThrows(IllegalArgumentException.class, () -> EventCodecs.forName("xml"));
+    }
+}
@@ -1,8 +1,7 @@
 package com.epita.redis;
 
 import com.epita.events.UserActionEvent;
-import io.quarkus.redis.datasource.RedisDataSource;
-import io.quarkus.redis.datasource.pubsub.PubSubCommands;
+import com.epita.events.UserActionEventBus;
 import jakarta.enterprise.context.ApplicationScoped;
 
 /**
@@ -10,15 +9,15 @@ import jakarta.enterprise.context.ApplicationScoped;
  */
 @ApplicationScoped
 public class PostActionPublisher {
-    private final PubSubCommands<UserActionEvent> publisher;
+    private final UserActionEventBus publisher;
 
     /**
      * Constructor to initialize the Redis publisher.
      *
-     * @param ds the Redis data source
+     * @param eventBus the event bus, publishing over the configured transport
      */
-    public PostActionPublisher(RedisDataSource ds) {
-        publisher = ds.pubsub(UserActionEvent.class);
+    public PostActionPublisher(UserActionEventBus eventBus) {
+        publisher = eventBus;
     }
 
     /**
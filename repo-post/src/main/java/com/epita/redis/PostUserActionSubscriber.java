@@ -1,20 +1,19 @@
 package com.epita.redis;
 
+import com.epita.events.EventSubscription;
 import com.epita.events.UserActionEvent;
+import com.epita.events.UserActionEventBus;
 import com.epita.repository.PostRepoMongo;
 import com.epita.repository.RegisteredUsersRepo;
-import io.quarkus.redis.datasource.RedisDataSource;
-import io.quarkus.redis.datasource.pubsub.PubSubCommands;
 import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import org.jboss.logging.Logger;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
-import static io.quarkus.mongodb.runtime.dns.MongoDnsClientProvider.vertx;
 
 /**
  * Subscriber for user action events from Redis.
@@ -31,36 +30,33 @@ public class PostUserActionSubscriber implements Consumer<UserActionEvent> {
     @Inject
     PostRepoMongo postRepoMongo;
 
-    private final List<PubSubCommands.RedisSubscriber> subscribers = new ArrayList<>();
+    @Inject
+    UserActionEventBus eventBus;
+
+    private EventSubscription subscription;
+
     /**
-     * Constructor to initialize the Redis subscriber.
-     *
-     * @param ds the Redis data source
+     * Subscribes to the user action events once the dependencies are injected.
+     * Events of the same user are handled in order, events of different users in parallel.
      */
-    public PostUserActionSubscriber(RedisDataSource ds) {
-        subscribers.add(ds.pubsub(UserActionEvent.class).subscribe(UserActionEvent.ActionType.USER_DELETED.getValue(), this));
-        subscribers.add(ds.pubsub(UserActionEvent.class).subscribe(UserActionEvent.ActionType.USER_CREATED.getValue(), this));
-        subscribers.add(ds.pubsub(UserActionEvent.class).subscribe(UserActionEvent.ActionType.USER_BLOCKED.getValue(), this));
+    @PostConstruct
+    void subscribe() {
+        subscription = eventBus.subscribe(List.of(
+                UserActionEvent.ActionType.USER_DELETED,
+                UserActionEvent.ActionType.USER_CREATED,
+                UserActionEvent.ActionType.USER_BLOCKED), UserActionEvent::getUsername, this);
     }
 
     /**
-     * Handles incoming user action events.
+     * Handles incoming user action events. Runs on the event dispatcher, failures are logged by the bus.
      *
      * @param event the user action event
      */
     @Override
     public void accept(UserActionEvent event) {
-        vertx.executeBlocking(future -> {
-            // Traitement synchrone ici
-            logger.infof("[Event Start] %s", event);
-            handleEvent(event);
-            logger.infof("[Event Success] %s", event);
-            future.complete();
-        }, res -> {
-            if (res.failed()) {
-                logger.errorf("[Event Failed] %s || Error: %s", event, res.cause().getMessage());
-            }
-        });
+        logger.infof("[Event Start] %s", event);
+        handleEvent(event);
+        logger.infof("[Event Success] %s", event);
     }
 
     /**
@@ -127,6 +123,6 @@ public class PostUserActionSubscriber implements Consumer<UserActionEvent> {
      */
     @PreDestroy
     public void terminate() {
-        subscribers.forEach(PubSubCommands.RedisSubscriber::unsubscribe);
+        subscription.unsubscribe();
     }
 }
\ No newline at end of file
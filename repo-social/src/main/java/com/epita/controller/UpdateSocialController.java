@@ -1,5 +1,7 @@
 package com.epita.controller;
 
+import com.epita.repository.models.FollowPreconditions;
+import com.epita.repository.models.LikePreconditions;
 import com.epita.service.SocialService;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
@@ -47,18 +49,20 @@ public class UpdateSocialController {
             return Response.status(Response.Status.BAD_REQUEST)
                     .entity("Un utilisateur ne peut pas se suivre lui-même").build();
         }
+        // Toutes les vérifications en une seule requête Neo4j
+        FollowPreconditions preconditions = socialService.getFollowPreconditions(username, targetUsername);
         // Vérification si l'utilisateur existe
-        if (!socialService.userExists(username) || !socialService.userExists(targetUsername)) {
+        if (!preconditions.userExists() || !preconditions.targetExists()) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity("L'un des utilisateurs n'existe pas").build();
         }
         // Vérification si l'un des utilisateurs est bloqué l'autre
-        if (socialService.isUserBlocked(username, targetUsername) || socialService.isUserBlocked(targetUsername, username)) {
+        if (preconditions.blocked()) {
             return Response.status(Response.Status.FORBIDDEN)
                     .entity("Action impossible car un des utilisateurs a bloqué l'autre").build();
         }
         // Vérification si l'utilisateur suit déjà l'autre
-        if (socialService.isUserFollowing(username, targetUsername)) {
+        if (preconditions.following()) {
             return Response.status(Response.Status.CONFLICT)
                     .entity("L'utilisateur suit déjà cette personne").build();
         }
@@ -197,29 +201,29 @@ public class UpdateSocialController {
             @PathParam("username") String username,
             @Parameter(description = "Identifiant du post", required = true)
             @PathParam("postId") String postId) {
+        // Toutes les vérifications en une seule requête Neo4j
+        LikePreconditions preconditions = socialService.getLikePreconditions(username, postId);
         // Vérifié que l'utilisateur existe
-        if (!socialService.userExists(username)) {
+        if (!preconditions.userExists()) {
             return Response.status(Response.Status.NOT_FOUND)
                     .entity("L'utilisateur n'existe pas").build();
         }
 
         try {
             // Vérifier si le post existe
-            if (!socialService.postExists(postId)) {
+            if (!preconditions.postExists()) {
                 return Response.status(Response.Status.NOT_FOUND)
                         .entity("Le post n'existe pas").build();
             }
 
             // Vérifier si l'utilisateur a déjà aimé ce post
-            if (socialService.hasUserLikedPost(username, postId)) {
+            if (preconditions.liked()) {
                 return Response.status(Response.Status.CONFLICT)
                         .entity("L'utilisateur aime déjà ce post").build();
             }
 
             // Vérifier si l'auteur du post a bloqué l'utilisateur ou inversement
-            String postAuthor = socialService.getPostAuthor(postId);
-            if (postAuthor != null && (socialService.isUserBlocked(username, postAuthor) ||
-                    socialService.isUserBlocked(postAuthor, username))) {
+            if (preconditions.blocked()) {
                 return Response.status(Response.Status.FORBIDDEN)
                         .entity("Action impossible car un blocage existe entre l'utilisateur et l'auteur").build();
             }
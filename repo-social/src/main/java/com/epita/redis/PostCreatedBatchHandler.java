@@ -0,0 +1,51 @@
+package com.epita.redis;
+
+import com.epita.events.UserActionEvent;
+import com.epita.repository.SocialRepoNeo4j;
+import com.epita.repository.models.Node;
+import com.epita.repository.models.Relationship;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.inject.Singleton;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Handles the POST_CREATED events delivered together by the event bus (see
+ * {@link com.epita.events.UserActionEventBus#subscribeBatch}): the post nodes and the relationships with
+ * their authors are created by one Neo4j statement per batch. A failed write fails every event of the batch.
+ */
+@Singleton
+public class PostCreatedBatchHandler implements Consumer<List<UserActionEvent>> {
+
+    private final SocialRepoNeo4j neo4jRepo;
+    private final Logger logger;
+    private final DistributionSummary batchSizes;
+
+    public PostCreatedBatchHandler(SocialRepoNeo4j neo4jRepo, MeterRegistry registry, Logger logger) {
+        this.neo4jRepo = neo4jRepo;
+        this.logger = logger;
+        this.batchSizes = DistributionSummary.builder("social.post_created.batch_size")
+                .description("Number of POST_CREATED relationships written in one Neo4j transaction")
+                .register(registry);
+    }
+
+    /**
+     * @param events the POST_CREATED events of one delivery, in delivery order
+     */
+    @Override
+    public void accept(List<UserActionEvent> events) {
+        long now = System.currentTimeMillis();
+        List<Relationship> relationships = new ArrayList<>(events.size());
+        for (UserActionEvent event : events) {
+            relationships.add(new Relationship(new Node(Node.NodeType.USER, event.getUsername()),
+                    new Node(Node.NodeType.POST, event.getPostId()), Relationship.RelationshipType.POSTED, now));
+        }
+        neo4jRepo.createOrUpdateRelationships(relationships);
+        batchSizes.record(relationships.size());
+        logger.infof("[POST CREATED][SERVICE]: Created %d posts", relationships.size());
+    }
+}
@@ -1,22 +1,20 @@
 package com.epita.redis;
 
+import com.epita.events.EventSubscription;
 import com.epita.events.UserActionEvent;
+import com.epita.events.UserActionEventBus;
 import com.epita.repository.SocialRepoNeo4j;
-import com.epita.repository.models.Node;
-import com.epita.repository.models.Relationship;
-import io.quarkus.redis.datasource.RedisDataSource;
-import io.quarkus.redis.datasource.pubsub.PubSubCommands;
+import com.epita.service.SocialGraphCache;
 import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import org.jboss.logging.Logger;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import java.util.function.Consumer;
-import static io.quarkus.mongodb.runtime.dns.MongoDnsClientProvider.vertx;
 
 /**
  * Subscriber for post action events from Redis.
@@ -30,40 +28,44 @@ public class SocialUserActionSubscriber implements Consumer<UserActionEvent> {
     @Inject
     SocialRepoNeo4j neo4jRepo;
 
-    private final List<PubSubCommands.RedisSubscriber> subscribers = new ArrayList<>();
+    @Inject
+    PostCreatedBatchHandler postCreatedBatchHandler;
+
+    @Inject
+    SocialGraphCache socialGraphCache;
+
+    @Inject
+    UserActionEventBus eventBus;
 
+    private EventSubscription subscription;
+    private EventSubscription postCreatedSubscription;
 
     /**
-     * Constructor to initialize the Redis subscriber.
-     *
-     * @param ds the Redis data source
+     * Subscribes to the post action events once the dependencies are injected.
+     * Events of the same user are handled in order, events of different users in parallel.
+     * The POST_CREATED events delivered together are written in one batch, still in order with the
+     * other events of their users.
      */
-    public SocialUserActionSubscriber(RedisDataSource ds) {
-        subscribers.add(ds.pubsub(UserActionEvent.class).subscribe(UserActionEvent.ActionType.USER_DELETED.getValue(), this));
-        subscribers.add(ds.pubsub(UserActionEvent.class).subscribe(UserActionEvent.ActionType.USER_CREATED.getValue(), this));
-        subscribers.add(ds.pubsub(UserActionEvent.class).subscribe(UserActionEvent.ActionType.POST_DELETED.getValue(), this));
-        subscribers.add(ds.pubsub(UserActionEvent.class).subscribe(UserActionEvent.ActionType.POST_CREATED.getValue(), this));
+    @PostConstruct
+    void subscribe() {
+        subscription = eventBus.subscribe(List.of(
+                UserActionEvent.ActionType.USER_DELETED,
+                UserActionEvent.ActionType.USER_CREATED,
+                UserActionEvent.ActionType.POST_DELETED), UserActionEvent::getUsername, this);
+        postCreatedSubscription = eventBus.subscribeBatch(List.of(UserActionEvent.ActionType.POST_CREATED),
+                UserActionEvent::getUsername, postCreatedBatchHandler);
     }
 
     /**
-     * Handles incoming post action events.
+     * Handles incoming post action events. Runs on the event dispatcher, failures are logged by the bus.
      *
      * @param event the post action event
      */
     @Override
     public void accept(UserActionEvent event) {
         logger.infof("[Event Start] %s", event);
-        vertx.executeBlocking(future -> {
-            // Traitement synchrone ici
-            logger.infof("[Event Start] %s", event);
-            handleEvent(event);
-            logger.infof("[Event Success] %s", event);
-            future.complete();
-        }, res -> {
-            if (res.failed()) {
-                logger.errorf("[Event Failed] %s || Error: %s", event, res.cause().getMessage());
-            }
-        });
+        handleEvent(event);
+        logger.infof("[Event Success] %s", event);
     }
 
     /**
@@ -86,10 +88,6 @@ public class SocialUserActionSubscriber implements Consumer<UserActionEvent> {
                 handlePostAndRelationDeletion(event.getPostId());
                 logger.infof("[POST DELETE][SERVICE]:Post deleted: %s", event.getPostId());
             }
-            case POST_CREATED -> {
-                handlePostCreation(event.getPostId(), event.getUsername());
-                logger.infof("[POST CREATED][SERVICE]:Post created: %s", event.getPostId());
-            }
             default -> logger.warn("Unhandled event type: " + event.getActionType());
         }
     }
@@ -106,28 +104,6 @@ public class SocialUserActionSubscriber implements Consumer<UserActionEvent> {
         }
     }
 
-    /**
-     * Handles the creation of a post in Neo4j.
-     *
-     * @param postId the UUID of the post
-     */
-    private void handlePostCreation(String postId, String username) {
-        logger.info("[POST CREATE][REDIS]: Creating post: " + postId);
-        Boolean success = neo4jRepo.createPostNode(postId);
-
-        // Create the relationship between the user and the post
-        if (success) {
-            Node userNode = new Node(Node.NodeType.USER, username);
-            Node postNode = new Node(Node.NodeType.POST, postId);
-            Relationship relationship = new Relationship(userNode, postNode, Relationship.RelationshipType.POSTED, System.currentTimeMillis());
-            neo4jRepo.createOrUpdateRelationship(relationship);
-            logger.info("[POST CREATE][REDIS]: Creating relationship: " + username + "posted post with " + postId);
-        }
-        if (!success) {
-            logger.errorf("[POST CREATE][SERVICE]:Failed to create post node in Neo4j for postId: %s", postId);
-        }
-    }
-
     /**
      * Handles the deletion of a user in Neo4j.
      * Deletes its posts and relationships.
@@ -140,6 +116,8 @@ public class SocialUserActionSubscriber implements Consumer<UserActionEvent> {
             logger.errorf("[USER DELETE][REDIS]:Failed to delete user node in Neo4j for nodeId: %s", username);
         }
         neo4jRepo.deleteUsersPosts(username);
+        // L'utilisateur peut apparaître dans les listes de n'importe quel autre utilisateur
+        socialGraphCache.invalidateAll();
     }
 
     /**
@@ -168,9 +146,8 @@ public class SocialUserActionSubscriber implements Consumer<UserActionEvent> {
      */
     @PreDestroy
     public void terminate() {
-        for (PubSubCommands.RedisSubscriber subscriber : subscribers) {
-            subscriber.unsubscribe();
-        }
+        subscription.unsubscribe();
+        postCreatedSubscription.unsubscribe();
         logger.info("[Redis Subscriber] Unsubscribed from all channels.");
     }
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package com.epita.repository;
+
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Session;
+
+import java.util.List;
+
+/**
+ * Creates the schema of the social graph at startup: a uniqueness constraint on the nodeId of
+ * :User and :Post nodes, which also backs the index the label-anchored lookups of
+ * {@link SocialRepoNeo4j} seek into. The statements are idempotent.
+ */
+@Startup
+@ApplicationScoped
+public class SocialGraphSchema {
+
+    static final List<String> CONSTRAINTS = List.of(
+            "CREATE CONSTRAINT user_node_id IF NOT EXISTS FOR (n:User) REQUIRE n.nodeId IS UNIQUE",
+            "CREATE CONSTRAINT post_node_id IF NOT EXISTS FOR (n:Post) REQUIRE n.nodeId IS UNIQUE"
+    );
+
+    @Inject
+    Driver neo4jDriver;
+
+    @Inject
+    Logger logger;
+
+    @PostConstruct
+    void createConstraints() {
+        // Schema statements cannot share a transaction with other statements: one transaction each
+        for (String constraint : CONSTRAINTS) {
+            try (Session session = neo4jDriver.session()) {
+                session.executeWrite(tx -> tx.run(constraint).consume());
+            } catch (Exception e) {
+                // Existing duplicated nodeIds prevent the constraint: queries still work, without index
+                logger.error("[CREATE SCHEMA][REPOSITORY]: Impossible de créer la contrainte: " + constraint, e);
+            }
+        }
+        logger.info("[CREATE SCHEMA][REPOSITORY]: Contraintes d'unicité sur :User(nodeId) et :Post(nodeId) en place");
+    }
+}
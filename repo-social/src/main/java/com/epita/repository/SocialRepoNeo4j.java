@@ -1,24 +1,79 @@
 package com.epita.repository;
 
+import com.epita.repository.models.Adjacency;
+import com.epita.repository.models.FollowPreconditions;
+import com.epita.repository.models.LikePreconditions;
 import com.epita.repository.models.Node;
 import com.epita.repository.models.Relationship;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import org.jboss.logging.Logger;
 import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
 import org.neo4j.driver.Result;
 import org.neo4j.driver.Session;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
 /**
  * Repository for managing post data in Neo4j.
+ * Every statement is a constant taking its values as parameters, so that Neo4j plans it once, and
+ * anchors its nodes on their label so that lookups by nodeId are index seeks (see {@link SocialGraphSchema}).
  */
 @ApplicationScoped
 public class SocialRepoNeo4j {
 
+    private static final String DELETE_POST_RELATIONSHIPS =
+            "MATCH (p:Post {nodeId: $postId})-[r]-() DELETE r";
+    private static final String DELETE_USER_RELATIONSHIPS =
+            "MATCH (u:User {nodeId: $username})-[r]-() DELETE r";
+    private static final String DELETE_FOLLOWS_BOTH_WAYS =
+            "MATCH (a:User {nodeId: $username1})-[r:FOLLOWS]-(b:User {nodeId: $username2}) DELETE r";
+    private static final String DELETE_USER_POSTS_RELATIONSHIPS =
+            "MATCH (u:User {nodeId: $username})-->(p:Post)-[r]-() DELETE r";
+    private static final String DELETE_USER_TO_POSTS_RELATIONSHIPS =
+            "MATCH (u:User {nodeId: $username})-[r]->(p:Post) DELETE r";
+    private static final String DELETE_USER_POSTS =
+            "MATCH (u:User {nodeId: $username})-->(p:Post) DELETE p";
+    private static final String DELETE_LIKE =
+            "MATCH (a:User {nodeId: $userId})-[r:LIKES]->(b:Post {nodeId: $postId}) " +
+                    "DELETE r " +
+                    "RETURN COUNT(r) > 0 AS wasDeleted";
+    private static final String GET_POST_AUTHOR =
+            "MATCH (post:Post {nodeId: $postId})<-[:POSTED]-(user:User) RETURN user.nodeId AS userId";
+    private static final String GET_POST_LIKE_USERS =
+            "MATCH (user:User)-[r:LIKES]->(post:Post {nodeId: $postId}) RETURN user.nodeId AS userId";
+    private static final String GET_USER_LIKED_POSTS =
+            "MATCH (user:User {nodeId: $userId})-[r:LIKES]->(post:Post) RETURN post.nodeId AS postId";
+    private static final String GET_USER_FOLLOWERS =
+            "MATCH (user:User {nodeId: $userId})<-[:FOLLOWS]-(follower:User) RETURN follower.nodeId AS followerId";
+    private static final String GET_USER_FOLLOWS =
+            "MATCH (user:User {nodeId: $userId})-[:FOLLOWS]->(followed:User) RETURN followed.nodeId AS followedId";
+    private static final String GET_USER_BLOCKED_USERS =
+            "MATCH (user:User {nodeId: $userId})-[:BLOCKS]->(blocked:User) RETURN blocked.nodeId AS blockedId";
+    private static final String GET_USER_BLOCKING_USERS =
+            "MATCH (user:User {nodeId: $userId})<-[:BLOCKS]-(blocker:User) RETURN blocker.nodeId AS blockerId";
+    private static final String GET_FOLLOW_PRECONDITIONS =
+            "OPTIONAL MATCH (user:User {nodeId: $sourceId}) " +
+                    "OPTIONAL MATCH (target:User {nodeId: $targetId}) " +
+                    "RETURN user IS NOT NULL AS userExists, target IS NOT NULL AS targetExists, " +
+                    "user IS NOT NULL AND target IS NOT NULL AND EXISTS { MATCH (user)-[:BLOCKS]-(target) } AS blocked, " +
+                    "user IS NOT NULL AND target IS NOT NULL AND EXISTS { MATCH (user)-[:FOLLOWS]->(target) } AS following";
+    private static final String GET_LIKE_PRECONDITIONS =
+            "OPTIONAL MATCH (user:User {nodeId: $userId}) " +
+                    "OPTIONAL MATCH (post:Post {nodeId: $postId}) " +
+                    "OPTIONAL MATCH (post)<-[:POSTED]-(author:User) " +
+                    "WITH user, post, author LIMIT 1 " +
+                    "RETURN user IS NOT NULL AS userExists, post IS NOT NULL AS postExists, author.nodeId AS postAuthor, " +
+                    "user IS NOT NULL AND author IS NOT NULL AND EXISTS { MATCH (user)-[:BLOCKS]-(author) } AS blocked, " +
+                    "user IS NOT NULL AND post IS NOT NULL AND EXISTS { MATCH (user)-[:LIKES]->(post) } AS liked";
+
     @Inject
     Driver neo4jDriver;
 
@@ -35,7 +90,7 @@ public class SocialRepoNeo4j {
         Node postNode = new Node(Node.NodeType.POST, postId);
         try (Session session = neo4jDriver.session()) {
             session.executeWrite(tx -> {
-                tx.run(postNode.createCypher());
+                tx.run(postNode.createCypher(), postNode.parameters());
                 return null;
             });
             return true;
@@ -55,7 +110,7 @@ public class SocialRepoNeo4j {
         try (Session session = neo4jDriver.session()) {
             session.executeWrite(tx -> {
                 // Synchronous deletion of the node only (hybrid - step 1)
-                tx.run(postNode.deleteCypher());
+                tx.run(postNode.deleteCypher(), postNode.parameters());
                 return null;
             });
             return true;
@@ -82,19 +137,38 @@ public class SocialRepoNeo4j {
     }
 
     /**
-     * Creates or updates a relationship in Neo4j.
+     * Creates or updates a relationship in Neo4j, creating its nodes if necessary, in one statement.
      *
      * @param relationship the relationship to create or update
      */
     public void createOrUpdateRelationship(Relationship relationship) {
         try (Session session = neo4jDriver.session()) {
-            session.executeWrite(tx -> {
-                // Create nodes if necessary
-                tx.run(relationship.source().createCypher());
-                tx.run(relationship.target().createCypher());
+            session.executeWrite(tx -> tx.run(relationship.createCypher(), relationship.parameters()).consume());
+        }
+    }
 
-                // Create/Update the relationship with timestamp
-                tx.run(relationship.createCypher());
+    /**
+     * Creates or updates many relationships in Neo4j in one transaction, with one statement per
+     * relationship type.
+     *
+     * @param relationships the relationships to create or update
+     */
+    public void createOrUpdateRelationships(Collection<Relationship> relationships) {
+        if (relationships.isEmpty()) {
+            return;
+        }
+        Map<Relationship.RelationshipType, List<Map<String, Object>>> rowsByType = new EnumMap<>(Relationship.RelationshipType.class);
+        relationships.stream()
+                // Same locking order in concurrent batches, to avoid deadlocks
+                .sorted(Comparator.comparing((Relationship relationship) -> relationship.source().nodeId())
+                        .thenComparing(relationship -> relationship.target().nodeId()))
+                .forEach(relationship -> rowsByType
+                        .computeIfAbsent(relationship.type(), type -> new ArrayList<>())
+                        .add(relationship.parameters()));
+        try (Session session = neo4jDriver.session()) {
+            session.executeWrite(tx -> {
+                rowsByType.forEach((type, rows) ->
+                        tx.run(Relationship.createAllCypher(type), Map.of("rows", rows)).consume());
                 return null;
             });
         }
@@ -109,7 +183,7 @@ public class SocialRepoNeo4j {
     public boolean deleteRelationship(Relationship relationship) {
         try (Session session = neo4jDriver.session()) {
             session.executeWrite(tx -> {
-                tx.run(relationship.deleteCypher());
+                tx.run(relationship.deleteCypher(), relationship.parameters());
                 return null;
             });
             return true;
@@ -129,11 +203,7 @@ public class SocialRepoNeo4j {
         try (Session session = neo4jDriver.session()) {
             session.executeWrite(tx -> {
                 // Asynchronous cleanup of relationships (hybrid - step 2)
-                String cypher = String.format(
-                        "MATCH (p:Post {nodeId: '%s'})-[r]-() DELETE r",
-                        postId.toString()
-                );
-                tx.run(cypher);
+                tx.run(DELETE_POST_RELATIONSHIPS, Map.of("postId", postId.toString()));
                 return null;
             });
         }
@@ -149,19 +219,8 @@ public class SocialRepoNeo4j {
     public boolean removeFollowRelationsBetweenUsers(String username1, String username2) {
         try (Session session = neo4jDriver.session()) {
             session.executeWrite(tx -> {
-                // Suppression dans les deux sens
-                String cypherFromFirst = String.format(
-                        "MATCH (a:User {nodeId: '%s'})-[r:FOLLOWS]->(b:User {nodeId: '%s'}) DELETE r",
-                        username1, username2
-                );
-
-                String cypherFromSecond = String.format(
-                        "MATCH (a:User {nodeId: '%s'})-[r:FOLLOWS]->(b:User {nodeId: '%s'}) DELETE r",
-                        username2, username1
-                );
-
-                tx.run(cypherFromFirst);
-                tx.run(cypherFromSecond);
+                // Suppression dans les deux sens (relation non orientée dans le MATCH)
+                tx.run(DELETE_FOLLOWS_BOTH_WAYS, Map.of("username1", username1, "username2", username2));
                 return null;
             });
             return true;
@@ -189,10 +248,7 @@ public class SocialRepoNeo4j {
      * @return true if the node exists, otherwise false
      */
     public boolean nodeExists(String nodeId, Node.NodeType type) {
-        String cypher = String.format(
-                "MATCH (n:%s {nodeId: $nodeId}) RETURN COUNT(n) > 0 AS exists",
-                type.toString()
-        );
+        String cypher = Node.existsCypher(type);
 
         try (Session session = neo4jDriver.session()) {
             return session.executeRead(tx -> tx.run(cypher,
@@ -213,16 +269,9 @@ public class SocialRepoNeo4j {
      * @return true if the relationship exists, otherwise false
      */
     public boolean userRelationshipExists(String user1, String user2, String relationshipType) {
-        String cypher = String.format(
-                "MATCH (a:User {nodeId: '%s'})-[r:%s]->(b:User {nodeId: '%s'}) RETURN COUNT(r) > 0 AS exists",
-                user1, relationshipType, user2
-        );
-
-        try (Session session = neo4jDriver.session()) {
-            return session.executeRead(tx -> tx.run(cypher)
-                    .single().get("exists").asBoolean()
-            );
-        } catch (Exception e) {
+        try {
+            return relationshipExists(Relationship.RelationshipType.valueOf(relationshipType), user1, user2);
+        } catch (IllegalArgumentException e) {
             return false;
         }
     }
@@ -235,13 +284,17 @@ public class SocialRepoNeo4j {
      * @return true if the relationship exists, otherwise false
      */
     public boolean postRelationshipExists(String postId, String userId) {
-        String cypher = String.format(
-                "MATCH (a:User {nodeId: '%s'})-[r:POSTED]->(b:Post {nodeId: '%s'}) RETURN COUNT(r) > 0 AS exists",
-                userId, postId
-        );
+        return relationshipExists(Relationship.RelationshipType.POSTED, userId, postId);
+    }
 
+    public boolean likeRelationshipExists(String postId, String userId) {
+        return relationshipExists(Relationship.RelationshipType.LIKES, userId, postId);
+    }
+
+    private boolean relationshipExists(Relationship.RelationshipType type, String sourceId, String targetId) {
         try (Session session = neo4jDriver.session()) {
-            return session.executeRead(tx -> tx.run(cypher)
+            return session.executeRead(tx -> tx.run(Relationship.existsCypher(type),
+                            Map.of("sourceId", sourceId, "targetId", targetId))
                     .single().get("exists").asBoolean()
             );
         } catch (Exception e) {
@@ -249,18 +302,47 @@ public class SocialRepoNeo4j {
         }
     }
 
-    public boolean likeRelationshipExists(String postId, String userId) {
-        String cypher = String.format(
-                "MATCH (a:User {nodeId: '%s'})-[r:LIKES]->(b:Post {nodeId: '%s'}) RETURN COUNT(r) > 0 AS exists",
-                userId, postId
-        );
+    /**
+     * Reads everything the follow endpoint checks in one query: the existence of both users, a block
+     * in either direction and an existing FOLLOWS relationship.
+     *
+     * @param username       the nodeId of the user who follows
+     * @param targetUsername the nodeId of the user being followed
+     * @return the preconditions of the follow, as if nothing existed if the query failed
+     */
+    public FollowPreconditions getFollowPreconditions(String username, String targetUsername) {
+        try (Session session = neo4jDriver.session()) {
+            Record record = session.executeRead(tx -> tx.run(GET_FOLLOW_PRECONDITIONS,
+                    Map.of("sourceId", username, "targetId", targetUsername)).single());
+            return new FollowPreconditions(record.get("userExists").asBoolean(), record.get("targetExists").asBoolean(),
+                    record.get("blocked").asBoolean(), record.get("following").asBoolean());
+        } catch (Exception e) {
+            logger.error("[FOLLOW PRECONDITIONS][REPOSITORY]: Erreur lors de la vérification du suivi de "
+                    + targetUsername + " par " + username + ": " + e.getMessage());
+            return new FollowPreconditions(false, false, false, false);
+        }
+    }
 
+    /**
+     * Reads everything the like endpoint checks in one query: the existence of the user and of the post,
+     * the author of the post, a block in either direction between the user and the author, and an
+     * existing LIKES relationship.
+     *
+     * @param username the nodeId of the user who likes
+     * @param postId   the nodeId of the post
+     * @return the preconditions of the like, as if nothing existed if the query failed
+     */
+    public LikePreconditions getLikePreconditions(String username, String postId) {
         try (Session session = neo4jDriver.session()) {
-            return session.executeRead(tx -> tx.run(cypher)
-                    .single().get("exists").asBoolean()
-            );
+            Record record = session.executeRead(tx -> tx.run(GET_LIKE_PRECONDITIONS,
+                    Map.of("userId", username, "postId", postId)).single());
+            return new LikePreconditions(record.get("userExists").asBoolean(), record.get("postExists").asBoolean(),
+                    record.get("postAuthor").isNull() ? null : record.get("postAuthor").asString(),
+                    record.get("blocked").asBoolean(), record.get("liked").asBoolean());
         } catch (Exception e) {
-            return false;
+            logger.error("[LIKE PRECONDITIONS][REPOSITORY]: Erreur lors de la vérification du like du post "
+                    + postId + " par " + username + ": " + e.getMessage());
+            return new LikePreconditions(false, false, null, false, false);
         }
     }
 
@@ -272,29 +354,16 @@ public class SocialRepoNeo4j {
     public void deleteUsersPosts(String username) {
         try (Session session = neo4jDriver.session()) {
             session.executeWrite(tx -> {
+                Map<String, Object> parameters = Map.of("username", username);
+
                 // Supprimer toutes les relations entrantes et sortantes des posts de l'utilisateur
-                String deleteRelationsCypher = String.format(
-                        "MATCH (u:User {nodeId: '%s'})-->(p:Post)-[r]-() " +
-                                "DELETE r",
-                        username
-                );
-                tx.run(deleteRelationsCypher);
+                tx.run(DELETE_USER_POSTS_RELATIONSHIPS, parameters);
 
                 // Supprimer les relations entre l'utilisateur et ses posts
-                String deleteUserPostRelationsCypher = String.format(
-                        "MATCH (u:User {nodeId: '%s'})-[r]->(p:Post) " +
-                                "DELETE r",
-                        username
-                );
-                tx.run(deleteUserPostRelationsCypher);
+                tx.run(DELETE_USER_TO_POSTS_RELATIONSHIPS, parameters);
 
                 // Supprimer les nœuds des posts
-                String deletePostsCypher = String.format(
-                        "MATCH (u:User {nodeId: '%s'})-->(p:Post) " +
-                                "DELETE p",
-                        username
-                );
-                tx.run(deletePostsCypher);
+                tx.run(DELETE_USER_POSTS, parameters);
 
                 return null;
             });
@@ -313,7 +382,7 @@ public class SocialRepoNeo4j {
         Node userNode = new Node(Node.NodeType.USER, username);
         try (Session session = neo4jDriver.session()) {
             session.executeWrite(tx -> {
-                tx.run(userNode.createCypher());
+                tx.run(userNode.createCypher(), userNode.parameters());
                 return null;
             });
             return true;
@@ -350,7 +419,7 @@ public class SocialRepoNeo4j {
         try (Session session = neo4jDriver.session()) {
             session.executeWrite(tx -> {
                 // Synchronous deletion of the node only (hybrid - step 1)
-                tx.run(userNode.deleteCypher());
+                tx.run(userNode.deleteCypher(), userNode.parameters());
                 return null;
             });
             return true;
@@ -368,11 +437,7 @@ public class SocialRepoNeo4j {
         try (Session session = neo4jDriver.session()) {
             session.executeWrite(tx -> {
                 // Asynchronous cleanup of relationships (hybrid - step 2)
-                String cypher = String.format(
-                        "MATCH (u:User {nodeId: '%s'})-[r]-() DELETE r",
-                        username
-                );
-                tx.run(cypher);
+                tx.run(DELETE_USER_RELATIONSHIPS, Map.of("username", username));
                 return null;
             });
         }
@@ -386,15 +451,8 @@ public class SocialRepoNeo4j {
      * @return true if the relationship was deleted successfully, otherwise false
      */
     public boolean deleteLikeRelationship(String userId, String postId) {
-        String cypher = String.format(
-                "MATCH (a:User {nodeId: '%s'})-[r:LIKES]->(b:Post {nodeId: '%s'}) " +
-                        "DELETE r " +
-                        "RETURN COUNT(r) > 0 AS wasDeleted",
-                userId, postId
-        );
-
         try (Session session = neo4jDriver.session()) {
-            return session.executeWrite(tx -> tx.run(cypher)
+            return session.executeWrite(tx -> tx.run(DELETE_LIKE, Map.of("userId", userId, "postId", postId))
                     .single().get("wasDeleted").asBoolean());
         } catch (Exception e) {
             return false;
@@ -416,18 +474,7 @@ public class SocialRepoNeo4j {
     }
 
     public boolean relationshipExists(Relationship relationship) {
-        String cypher = String.format(
-                "MATCH (a:User {nodeId: '%s'})-[r:%s]->(b:User {nodeId: '%s'}) RETURN COUNT(r) > 0 AS exists",
-                relationship.source().nodeId(), relationship.type(), relationship.target().nodeId()
-        );
-
-        try (Session session = neo4jDriver.session()) {
-            return session.executeRead(tx -> tx.run(cypher)
-                    .single().get("exists").asBoolean()
-            );
-        } catch (Exception e) {
-            return false;
-        }
+        return relationshipExists(relationship.type(), relationship.source().nodeId(), relationship.target().nodeId());
     }
 
     /**
@@ -440,9 +487,7 @@ public class SocialRepoNeo4j {
         try (Session session = neo4jDriver.session()) {
             logger.info("[GET POST AUTHOR][REPOSITORY]: Récupération de l'auteur du post: " + postNode.nodeId());
             String postId = postNode.nodeId();
-            String query = String.format("MATCH (post {nodeType: 'Post', nodeId: '%s'})<-[:POSTED]-(user {nodeType: 'User'}) RETURN user.nodeId AS userId", postId);
-
-            Result result = session.run(query, Map.of("postId", postId));
+            Result result = session.run(GET_POST_AUTHOR, Map.of("postId", postId));
             return result.list().stream()
                     .map(record -> record.get("userId").asString())
                     .findFirst()
@@ -463,9 +508,7 @@ public class SocialRepoNeo4j {
     ) {
         try (Session session = neo4jDriver.session()) {
             logger.info("[GET POST LIKE USERS][REPOSITORY]: Récupération des utilisateurs qui ont aimé le post: " + postId);
-            String query = String.format("MATCH (user {nodeType: 'User'})-[r:LIKES]->(post {nodeType: 'Post', nodeId: '%s'}) RETURN user.nodeId AS userId", postId);
-
-            Result result = session.run(query, Map.of("postId", postId));
+            Result result = session.run(GET_POST_LIKE_USERS, Map.of("postId", postId));
             return result.list().stream()
                     .map(record -> record.get("userId").asString())
                     .toList();
@@ -484,9 +527,7 @@ public class SocialRepoNeo4j {
     public List<String> getUserLikedPosts(String userId) {
         try (Session session = neo4jDriver.session()) {
             logger.info("[GET USER LIKED POSTS][REPOSITORY]: Récupération des posts aimés par l'utilisateur: " + userId);
-            String query = String.format("MATCH (user {nodeType: 'User', nodeId: '%s'})-[r:LIKES]->(post {nodeType: 'Post'}) RETURN post.nodeId AS postId", userId);
-
-            Result result = session.run(query, Map.of("userId", userId));
+            Result result = session.run(GET_USER_LIKED_POSTS, Map.of("userId", userId));
             return result.list().stream()
                     .map(record -> record.get("postId").asString())
                     .toList();
@@ -496,6 +537,28 @@ public class SocialRepoNeo4j {
         }
     }
 
+    /**
+     * Reads the users adjacent to a user. Unlike the getters below, errors are thrown rather than read
+     * as an empty list, so that they are not cached (see SocialGraphCache).
+     *
+     * @param userId    the nodeId of the user
+     * @param adjacency the relationship and direction
+     * @return the nodeIds of the adjacent users
+     */
+    public List<String> getAdjacentUsers(String userId, Adjacency adjacency) {
+        String query = switch (adjacency) {
+            case FOLLOWERS -> GET_USER_FOLLOWERS;
+            case FOLLOWS -> GET_USER_FOLLOWS;
+            case BLOCKED -> GET_USER_BLOCKED_USERS;
+            case BLOCKING -> GET_USER_BLOCKING_USERS;
+        };
+        try (Session session = neo4jDriver.session()) {
+            logger.info("[GET ADJACENT USERS][REPOSITORY]: Récupération des utilisateurs " + adjacency + " de: " + userId);
+            return session.executeRead(tx -> tx.run(query, Map.of("userId", userId))
+                    .list(record -> record.get(0).asString()));
+        }
+    }
+
     /**
      * Récupère la liste des abonnés d'un utilisateur.
      *
@@ -505,9 +568,7 @@ public class SocialRepoNeo4j {
     public List<String> getUserFollowers(String userId) {
         try (Session session = neo4jDriver.session()) {
             logger.info("[GET USER FOLLOWERS][REPOSITORY]: Récupération des abonnés de l'utilisateur: " + userId);
-            String query = String.format("MATCH (user {nodeType: 'User', nodeId: '%s'})<-[:FOLLOWS]-(follower {nodeType: 'User'}) RETURN follower.nodeId AS followerId", userId);
-
-            Result result = session.run(query, Map.of("userId", userId));
+            Result result = session.run(GET_USER_FOLLOWERS, Map.of("userId", userId));
             return result.list().stream()
                     .map(record -> record.get("followerId").asString())
                     .toList();
@@ -526,9 +587,7 @@ public class SocialRepoNeo4j {
     public List<String> getUserFollows(String userId) {
         try (Session session = neo4jDriver.session()) {
             logger.info("[GET USER FOLLOWS][REPOSITORY]: Récupération des utilisateurs suivis par: " + userId);
-            String query = String.format("MATCH (user {nodeType: 'User', nodeId: '%s'})-[:FOLLOWS]->(followed {nodeType: 'User'}) RETURN followed.nodeId AS followedId", userId);
-
-            Result result = session.run(query, Map.of("userId", userId));
+            Result result = session.run(GET_USER_FOLLOWS, Map.of("userId", userId));
             return result.list().stream()
                     .map(record -> record.get("followedId").asString())
                     .toList();
@@ -547,9 +606,7 @@ public class SocialRepoNeo4j {
     public List<String> getUserBlockedUsers(String userId) {
         try (Session session = neo4jDriver.session()) {
             logger.info("[GET USER BLOCKED USERS][REPOSITORY]: Récupération des utilisateurs bloqués par: " + userId);
-            String query = String.format("MATCH (user {nodeType: 'User', nodeId: '%s'})-[:BLOCKS]->(blocked {nodeType: 'User'}) RETURN blocked.nodeId AS blockedId", userId);
-
-            Result result = session.run(query, Map.of("userId", userId));
+            Result result = session.run(GET_USER_BLOCKED_USERS, Map.of("userId", userId));
             return result.list().stream()
                     .map(record -> record.get("blockedId").asString())
                     .toList();
@@ -568,9 +625,7 @@ public class SocialRepoNeo4j {
     public List<String> getUserBlockingUsers(String userId) {
         try (Session session = neo4jDriver.session()) {
             logger.info("[GET USER BLOCKING USERS][REPOSITORY]: Récupération des utilisateurs qui bloquent: " + userId);
-            String query = String.format("MATCH (user {nodeType: 'User', nodeId: '%s'})<-[:BLOCKS]-(blocker {nodeType: 'User'}) RETURN blocker.nodeId AS blockerId", userId);
-
-            Result result = session.run(query, Map.of("userId", userId));
+            Result result = session.run(GET_USER_BLOCKING_USERS, Map.of("userId", userId));
             return result.list().stream()
                     .map(record -> record.get("blockerId").asString())
                     .toList();
@@ -0,0 +1,15 @@
+package com.epita.repository.models;
+
+/**
+ * The users adjacent to a user in the social graph, by relationship and direction.
+ */
+public enum Adjacency {
+    /** Users following the user */
+    FOLLOWERS,
+    /** Users the user follows */
+    FOLLOWS,
+    /** Users the user has blocked */
+    BLOCKED,
+    /** Users who have blocked the user */
+    BLOCKING
+}
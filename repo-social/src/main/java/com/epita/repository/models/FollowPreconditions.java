@@ -0,0 +1,12 @@
+package com.epita.repository.models;
+
+/**
+ * What the follow endpoint checks before creating a FOLLOWS relationship, read in one query.
+ *
+ * @param userExists   whether the follower exists
+ * @param targetExists whether the followed user exists
+ * @param blocked      whether one of the users has blocked the other
+ * @param following    whether the follower already follows the target
+ */
+public record FollowPreconditions(boolean userExists, boolean targetExists, boolean blocked, boolean following) {
+}
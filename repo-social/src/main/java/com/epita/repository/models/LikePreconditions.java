@@ -0,0 +1,13 @@
+package com.epita.repository.models;
+
+/**
+ * What the like endpoint checks before creating a LIKES relationship, read in one query.
+ *
+ * @param userExists whether the user exists
+ * @param postExists whether the post exists
+ * @param postAuthor the nodeId of the author of the post, or null if unknown
+ * @param blocked    whether the user and the author of the post have blocked one another
+ * @param liked      whether the user already likes the post
+ */
+public record LikePreconditions(boolean userExists, boolean postExists, String postAuthor, boolean blocked, boolean liked) {
+}
@@ -3,6 +3,15 @@ package com.epita.repository.models;
 import io.smallrye.common.constraint.NotNull;
 import jakarta.ws.rs.InternalServerErrorException;
 
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * A node of the social graph. Its Cypher statements are constant per node type, the node id being
+ * passed as the {@code $nodeId} parameter (see {@link #parameters()}), so that Neo4j compiles each of
+ * them once and reuses the plan from its query cache. They are all anchored on the label of the node,
+ * so that they seek into the :User(nodeId) and :Post(nodeId) indexes (see SocialGraphSchema).
+ */
 public record Node(NodeType nodeType, String nodeId) {
     public enum NodeType {
         USER("User"),
@@ -28,6 +37,32 @@ public record Node(NodeType nodeType, String nodeId) {
         }
     }
 
+    private static final Map<NodeType, String> CREATE_CYPHER = templates(
+            "MERGE (n:%1$s {nodeId: $nodeId}) ON CREATE SET n.nodeType = '%1$s'");
+    private static final Map<NodeType, String> FIND_CYPHER = templates(
+            "MATCH (n:%s {nodeId: $nodeId}) RETURN n");
+    private static final Map<NodeType, String> FORCE_DELETE_CYPHER = templates(
+            "MATCH (n:%s {nodeId: $nodeId}) DETACH DELETE n");
+    private static final Map<NodeType, String> DELETE_CYPHER = templates(
+            "MATCH (n:%s {nodeId: $nodeId}) DELETE n");
+    private static final Map<NodeType, String> DEBUG_DELETE_CYPHER = templates(
+            "MATCH (n:%s {nodeId: $nodeId}) " +
+                    "OPTIONAL MATCH (n)-[r]-() " +
+                    "WITH n, COLLECT(r) AS relations " +
+                    "FOREACH (rel IN relations | DELETE rel) " +
+                    "DELETE n");
+    private static final Map<NodeType, String> EXISTS_CYPHER = templates(
+            "MATCH (n:%s {nodeId: $nodeId}) RETURN COUNT(n) > 0 AS exists");
+
+    // One statement per label: labels cannot be passed as parameters
+    private static Map<NodeType, String> templates(final String pattern) {
+        final Map<NodeType, String> templates = new EnumMap<>(NodeType.class);
+        for (final var type : NodeType.values()) {
+            templates.put(type, String.format(pattern, type));
+        }
+        return templates;
+    }
+
     public Node(final @NotNull NodeType nodeType, final @NotNull String nodeId) {
         this.nodeType = nodeType;
         this.nodeId = nodeId; // username or postId
@@ -49,51 +84,37 @@ public record Node(NodeType nodeType, String nodeId) {
         return String.format("Node{nodeType=%s, nodeId='%s'}", nodeType, nodeId);
     }
 
+    /**
+     * @return the parameters of the Cypher statements of this node
+     */
+    public Map<String, Object> parameters() {
+        return Map.of("nodeId", nodeId);
+    }
+
     public String createCypher() {
-        return String.format(
-                "MERGE (n:%s {nodeId: '%s', nodeType: '%s'})",
-                nodeType.toString(),
-                nodeId,
-                nodeType.toString()
-        );
+        return CREATE_CYPHER.get(nodeType);
     }
 
     public String findCypher() {
-        return String.format(
-                "MATCH (n:%s {nodeId: '%s'}) RETURN n",
-                nodeType.toString(),
-                nodeId
-        );
+        return FIND_CYPHER.get(nodeType);
     }
 
     // This method is used to delete a node and all its relationships
     public String forceDeleteCypher() {
-        return String.format(
-                "MATCH (n:%s {nodeId: '%s'}) DETACH DELETE n",
-                nodeType.toString(),
-                nodeId
-        );
+        return FORCE_DELETE_CYPHER.get(nodeType);
     }
 
     // This method is used to delete a node with the idea that the relationships will be suppressed asynchronously later
     public String deleteCypher() {
-        return String.format(
-                "MATCH (n:%s {nodeId: '%s'}) DELETE n",
-                nodeType.toString(),
-                nodeId
-        );
+        return DELETE_CYPHER.get(nodeType);
     }
 
     // Lists all relationships suppressions implied in a potential suppression
     public String debugDeleteCypher() {
-        return String.format(
-                "MATCH (n:%s {nodeId: '%s'}) " +
-                        "OPTIONAL MATCH (n)-[r]-() " +
-                        "WITH n, COLLECT(r) AS relations " +
-                        "FOREACH (rel IN relations | DELETE rel) " +
-                        "DELETE n",
-                nodeType.toString(),
-                nodeId
-        );
+        return DEBUG_DELETE_CYPHER.get(nodeType);
+    }
+
+    public static String existsCypher(final @NotNull NodeType nodeType) {
+        return EXISTS_CYPHER.get(nodeType);
     }
 }
\ No newline at end of file
@@ -6,6 +6,13 @@ import static com.epita.repository.models.Node.NodeType.POST;
 import io.smallrye.common.constraint.NotNull;
 import jakarta.ws.rs.BadRequestException;
 
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * A relationship of the social graph. As for {@link Node}, its Cypher statements are constant per
+ * relationship type and take the ids and the timestamp as parameters (see {@link #parameters()}).
+ */
 public record Relationship(
         Node source,
         Node target,
@@ -14,10 +21,49 @@ public record Relationship(
 ) {
 
     public enum RelationshipType {
-        FOLLOWS,
-        BLOCKS,
-        LIKES,
-        POSTED
+        FOLLOWS(USER, USER),
+        BLOCKS(USER, USER),
+        LIKES(USER, POST),
+        POSTED(USER, POST);
+
+        private final Node.NodeType sourceType;
+        private final Node.NodeType targetType;
+
+        RelationshipType(final Node.NodeType sourceType, final Node.NodeType targetType) {
+            this.sourceType = sourceType;
+            this.targetType = targetType;
+        }
+    }
+
+    // Creates the missing nodes and the relationship in one statement
+    private static final Map<RelationshipType, String> CREATE_CYPHER = templates(
+            "MERGE (a:%1$s {nodeId: $sourceId}) ON CREATE SET a.nodeType = '%1$s' " +
+                    "MERGE (b:%2$s {nodeId: $targetId}) ON CREATE SET b.nodeType = '%2$s' " +
+                    "MERGE (a)-[r:%3$s]->(b) " +
+                    "SET r.%4$s = $timestamp");
+    private static final Map<RelationshipType, String> CREATE_ALL_CYPHER = templates(
+            "UNWIND $rows AS row " +
+                    "MERGE (a:%1$s {nodeId: row.sourceId}) ON CREATE SET a.nodeType = '%1$s' " +
+                    "MERGE (b:%2$s {nodeId: row.targetId}) ON CREATE SET b.nodeType = '%2$s' " +
+                    "MERGE (a)-[r:%3$s]->(b) " +
+                    "SET r.%4$s = row.timestamp");
+    private static final Map<RelationshipType, String> DELETE_CYPHER = templates(
+            "MATCH (a:%1$s {nodeId: $sourceId})-[r:%3$s]->(b:%2$s {nodeId: $targetId}) " +
+                    "DELETE r");
+    private static final Map<RelationshipType, String> EXISTS_CYPHER = templates(
+            "MATCH (a:%1$s {nodeId: $sourceId})-[r:%3$s]->(b:%2$s {nodeId: $targetId}) " +
+                    "RETURN COUNT(r) > 0 AS exists");
+    private static final String FIND_FOLLOWERS_CYPHER =
+            "MATCH (u:User {nodeId: $userId})<-[r:FOLLOWS]-(follower) " +
+                    "RETURN follower.nodeId AS followerId, follower.nickname, r.since";
+
+    // One statement per relationship type: labels and types cannot be passed as parameters
+    private static Map<RelationshipType, String> templates(final String pattern) {
+        final Map<RelationshipType, String> templates = new EnumMap<>(RelationshipType.class);
+        for (final var type : RelationshipType.values()) {
+            templates.put(type, String.format(pattern, type.sourceType, type.targetType, type.name(), getPropertyName(type)));
+        }
+        return templates;
     }
 
     public Relationship(
@@ -61,7 +107,7 @@ public record Relationship(
         }
     }
 
-    private String getPropertyName() {
+    private static String getPropertyName(final RelationshipType type) {
         return switch(type) {
             case FOLLOWS, BLOCKS -> "since";
             case LIKES -> "likedAt";
@@ -69,36 +115,48 @@ public record Relationship(
         };
     }
 
-    public String createCypher() {
-        String prop = getPropertyName();
-        return String.format(
-                "MATCH (a:%s {nodeId: '%s'}), (b:%s {nodeId: '%s'}) " +
-                        "MERGE (a)-[r:%s]->(b) " +
-                        "ON CREATE SET r.%s = %d " +
-                        "ON MATCH SET r.%s = %d",
-                source.nodeType(), source.nodeId(),
-                target.nodeType(), target.nodeId(),
-                type.name(),
-                prop, timestamp,
-                prop, timestamp
+    /**
+     * @return the parameters of the Cypher statements of this relationship
+     */
+    public Map<String, Object> parameters() {
+        return Map.of(
+                "sourceId", source.nodeId(),
+                "targetId", target.nodeId(),
+                "timestamp", timestamp
         );
     }
 
+    /**
+     * @return the statement creating (or updating) this relationship and its nodes
+     */
+    public String createCypher() {
+        return CREATE_CYPHER.get(type);
+    }
+
+    /**
+     * @return the statement creating many relationships of a type and their nodes, with a
+     * {@code $rows} parameter listing the {@link #parameters()} of each relationship
+     */
+    public static String createAllCypher(final @NotNull RelationshipType type) {
+        return CREATE_ALL_CYPHER.get(type);
+    }
+
     public String deleteCypher() {
-        return String.format(
-                "MATCH (a:%s {nodeId: '%s'})-[r:%s]->(b:%s {nodeId: '%s'}) " +
-                        "DELETE r",
-                source.nodeType(), source.nodeId(),
-                type.name(),
-                target.nodeType(), target.nodeId()
-        );
+        return DELETE_CYPHER.get(type);
     }
 
-    public static String findFollowersCypher(String userId) {
-        return String.format(
-                "MATCH (u:User {nodeId: '%s'})<-[:FOLLOWS]-(follower) " +
-                        "RETURN follower.nodeId AS followerId, follower.nickname, r.since",
-                userId
-        );
+    /**
+     * @return the statement telling whether a relationship of this type exists, with the
+     * {@code $sourceId} and {@code $targetId} parameters
+     */
+    public static String existsCypher(final @NotNull RelationshipType type) {
+        return EXISTS_CYPHER.get(type);
+    }
+
+    /**
+     * @return the statement listing the followers of a user, with the {@code $userId} parameter
+     */
+    public static String findFollowersCypher() {
+        return FIND_FOLLOWERS_CYPHER;
     }
 }
\ No newline at end of file
@@ -0,0 +1,286 @@
+package com.epita.service;
+
+import com.epita.repository.models.Adjacency;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.redis.datasource.pubsub.PubSubCommands;
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BiFunction;
+
+/**
+ * In-process cache of the adjacency lists of the social graph (followers, follows, blocked and
+ * blocking users), loaded lazily from Neo4j. A list is held as a sorted array of interned ids, so that
+ * membership checks are binary searches and an id shared by many lists is stored once.
+ * Local follows and blocks update the cached lists in place; other pods are told over the
+ * {@code social.cache.invalidation-channel} Redis channel to drop the lists of the users involved.
+ * Eviction is Caffeine's W-TinyLFU, bounded by an estimate of the memory held by the arrays, with
+ * {@code social.cache.expire-after-write} as a bound on staleness if an invalidation is lost.
+ * Every invalidation bumps a generation of the users involved (striped by username hash); a load that
+ * ran while the generation of its user changed may have read the lists before the change, so it is
+ * returned but not cached.
+ * Hit ratio, evictions and size are exported under the {@code social_adjacency} cache name.
+ */
+@Startup
+@ApplicationScoped
+public class SocialGraphCache {
+
+    private record Key(String username, Adjacency adjacency) {
+    }
+
+    // Rough heap footprint of a cached list (key, array header) and of one of its references
+    private static final int LIST_BYTES = 96;
+    private static final int ID_BYTES = 8;
+    private static final String ALL = "*";
+    private static final String[] EMPTY = new String[0];
+    private static final int GENERATION_STRIPES = 4096;
+
+    private final Cache<Key, String[]> lists;
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private final AtomicLong resets = new AtomicLong();
+    private final PubSubCommands<String> pubsub;
+    private final String channel;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Counter remoteInvalidations;
+    private final Logger logger;
+    private PubSubCommands.RedisSubscriber subscriber;
+
+    public SocialGraphCache(RedisDataSource ds,
+                            MeterRegistry registry,
+                            Logger logger,
+                            @ConfigProperty(name = "social.cache.max-weight-bytes", defaultValue = "33554432") long maxWeight,
+                            @ConfigProperty(name = "social.cache.expire-after-write", defaultValue = "10M") Duration expireAfterWrite,
+                            @ConfigProperty(name = "social.cache.invalidation-channel", defaultValue = "social:adjacency:invalidations") String channel) {
+        this.pubsub = ds.pubsub(String.class);
+        this.channel = channel;
+        this.logger = logger;
+        this.lists = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((Key key, String[] ids) -> LIST_BYTES + ids.length * ID_BYTES)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, lists, "social_adjacency");
+        this.remoteInvalidations = Counter.builder("social.cache.remote_invalidations")
+                .description("Adjacency lists dropped on an invalidation from another pod")
+                .register(registry);
+    }
+
+    @PostConstruct
+    void subscribe() {
+        subscriber = pubsub.subscribe(channel, this::onInvalidation);
+        logger.info("[SOCIAL CACHE][SUBSCRIBE]: Listening for invalidations on " + channel);
+    }
+
+    @PreDestroy
+    void unsubscribe() {
+        if (subscriber != null) {
+            subscriber.unsubscribe();
+        }
+    }
+
+    /**
+     * Returns the users adjacent to a user, loading them on a miss. A failed load is not cached.
+     *
+     * @param username  the nodeId of the user
+     * @param adjacency the relationship and direction
+     * @param loader    reads the adjacent users from Neo4j, throwing if it cannot
+     * @return the nodeIds of the adjacent users, sorted
+     */
+    public List<String> get(String username, Adjacency adjacency, BiFunction<String, Adjacency, List<String>> loader) {
+        return List.of(load(username, adjacency, loader));
+    }
+
+    /**
+     * Checks whether a user is adjacent to another, loading the adjacency list on a miss.
+     *
+     * @param username  the nodeId of the user
+     * @param adjacency the relationship and direction
+     * @param other     the nodeId of the other user
+     * @param loader    reads the adjacent users from Neo4j, throwing if it cannot
+     * @return true if {@code other} is in the adjacency list of {@code username}
+     */
+    public boolean contains(String username, Adjacency adjacency, String other, BiFunction<String, Adjacency, List<String>> loader) {
+        return Arrays.binarySearch(load(username, adjacency, loader), other) >= 0;
+    }
+
+    private String[] load(String username, Adjacency adjacency, BiFunction<String, Adjacency, List<String>> loader) {
+        String[][] loaded = new String[1][];
+        String[] cached = lists.get(new Key(username, adjacency), key -> {
+            long generation = generationOf(username);
+            loaded[0] = compact(loader.apply(key.username(), key.adjacency()));
+            // Returning null leaves the key absent
+            return generationOf(username) == generation ? loaded[0] : null;
+        });
+        return cached != null ? cached : loaded[0];
+    }
+
+    private int stripeOf(String username) {
+        return Math.floorMod(username.hashCode(), GENERATION_STRIPES);
+    }
+
+    // Both counters only grow, so the sum changes whenever either of them does
+    private long generationOf(String username) {
+        return generations.get(stripeOf(username)) + resets.get();
+    }
+
+    /**
+     * Records a FOLLOWS relationship written to Neo4j.
+     */
+    public void follow(String username, String targetUsername) {
+        add(username, Adjacency.FOLLOWS, targetUsername);
+        add(targetUsername, Adjacency.FOLLOWERS, username);
+        publish(username, targetUsername);
+    }
+
+    /**
+     * Records a FOLLOWS relationship deleted from Neo4j.
+     */
+    public void unfollow(String username, String targetUsername) {
+        remove(username, Adjacency.FOLLOWS, targetUsername);
+        remove(targetUsername, Adjacency.FOLLOWERS, username);
+        publish(username, targetUsername);
+    }
+
+    /**
+     * Records a BLOCKS relationship written to Neo4j, and the deletion of the FOLLOWS relationships
+     * between both users that comes with it.
+     */
+    public void block(String username, String targetUsername) {
+        add(username, Adjacency.BLOCKED, targetUsername);
+        add(targetUsername, Adjacency.BLOCKING, username);
+        remove(username, Adjacency.FOLLOWS, targetUsername);
+        remove(username, Adjacency.FOLLOWERS, targetUsername);
+        remove(targetUsername, Adjacency.FOLLOWS, username);
+        remove(targetUsername, Adjacency.FOLLOWERS, username);
+        publish(username, targetUsername);
+    }
+
+    /**
+     * Records a BLOCKS relationship deleted from Neo4j.
+     */
+    public void unblock(String username, String targetUsername) {
+        remove(username, Adjacency.BLOCKED, targetUsername);
+        remove(targetUsername, Adjacency.BLOCKING, username);
+        publish(username, targetUsername);
+    }
+
+    /**
+     * Drops the cached lists of some users, here and on the other pods, when their relationships in
+     * Neo4j are not known for sure.
+     */
+    public void invalidate(String... usernames) {
+        invalidate(List.of(usernames));
+        publish(usernames);
+    }
+
+    /**
+     * Drops every cached list, here and on the other pods, e.g. once a user and its relationships are
+     * deleted, since the user may be in the lists of any other user.
+     */
+    public void invalidateAll() {
+        clear();
+        publish(ALL);
+    }
+
+    // Lists are replaced, never modified: readers may hold the previous array.
+    // Updates wait for a load in progress, then apply to what it loaded, so they are not lost.
+    private void add(String username, Adjacency adjacency, String other) {
+        lists.asMap().computeIfPresent(new Key(username, adjacency), (key, ids) -> {
+            int index = Arrays.binarySearch(ids, other);
+            if (index >= 0) {
+                return ids;
+            }
+            int insertion = -index - 1;
+            String[] added = new String[ids.length + 1];
+            System.arraycopy(ids, 0, added, 0, insertion);
+            added[insertion] = other.intern();
+            System.arraycopy(ids, insertion, added, insertion + 1, ids.length - insertion);
+            return added;
+        });
+    }
+
+    private void remove(String username, Adjacency adjacency, String other) {
+        lists.asMap().computeIfPresent(new Key(username, adjacency), (key, ids) -> {
+            int index = Arrays.binarySearch(ids, other);
+            if (index < 0) {
+                return ids;
+            }
+            String[] removed = new String[ids.length - 1];
+            System.arraycopy(ids, 0, removed, 0, index);
+            System.arraycopy(ids, index + 1, removed, index, ids.length - index - 1);
+            return removed;
+        });
+    }
+
+    // Generations are bumped first, so that a load in progress sees the change when it completes
+    private void invalidate(Collection<String> usernames) {
+        for (String username : usernames) {
+            generations.incrementAndGet(stripeOf(username));
+            for (Adjacency adjacency : Adjacency.values()) {
+                lists.invalidate(new Key(username, adjacency));
+            }
+        }
+    }
+
+    private void clear() {
+        resets.incrementAndGet();
+        lists.invalidateAll();
+    }
+
+    private void publish(String... usernames) {
+        try {
+            pubsub.publish(channel, instanceId + " " + String.join(" ", usernames));
+        } catch (Exception e) {
+            // The other pods catch up when their lists expire
+            logger.errorf("[SOCIAL CACHE][PUBLISH]: Could not publish the invalidation of %s: %s",
+                    Arrays.toString(usernames), e.getMessage());
+        }
+    }
+
+    /**
+     * Handles an invalidation message: the id of the sending pod, then the users whose lists changed,
+     * or {@code *} for all of them.
+     */
+    void onInvalidation(String message) {
+        List<String> parts = List.of(message.split(" "));
+        if (parts.isEmpty() || parts.get(0).equals(instanceId)) {
+            return;
+        }
+        List<String> usernames = parts.subList(1, parts.size());
+        if (usernames.contains(ALL)) {
+            clear();
+        } else {
+            invalidate(usernames);
+        }
+        remoteInvalidations.increment();
+    }
+
+    private static String[] compact(List<String> ids) {
+        if (ids.isEmpty()) {
+            return EMPTY;
+        }
+        String[] compacted = new String[ids.size()];
+        for (int i = 0; i < compacted.length; i++) {
+            compacted[i] = ids.get(i).intern();
+        }
+        Arrays.sort(compacted);
+        return compacted;
+    }
+}
@@ -3,6 +3,9 @@ package com.epita.service;
 import com.epita.events.UserActionEvent;
 import com.epita.redis.SocialActionPublisher;
 import com.epita.repository.SocialRepoNeo4j;
+import com.epita.repository.models.Adjacency;
+import com.epita.repository.models.FollowPreconditions;
+import com.epita.repository.models.LikePreconditions;
 import com.epita.repository.models.Node;
 import com.epita.repository.models.Relationship;
 import jakarta.enterprise.context.ApplicationScoped;
@@ -25,6 +28,9 @@ public class SocialService {
     @Inject
     SocialActionPublisher publisher;
 
+    @Inject
+    SocialGraphCache socialGraphCache;
+
     /**
      * Handles the blocking of a user in Neo4j.
      * Deletes following relationships if they exist.
@@ -42,6 +48,7 @@ public class SocialService {
         // Supprimer toute relation de suivi existante dans les deux sens
         boolean success = neo4jRepo.removeFollowRelationsBetweenUsers(username, targetUsername);
         if (success) {
+            socialGraphCache.block(username, targetUsername);
             logger.info("[BLOCK USER][SERVICE]: Suppression des relations de suivi entre " + username + " et " + targetUsername);
             // Envoyer un événement de blocage
             UserActionEvent event = new UserActionEvent();
@@ -51,6 +58,8 @@ public class SocialService {
             publisher.publishAction(event, UserActionEvent.ActionType.USER_BLOCKED.getValue());
         } else {
             logger.warn("[BLOCK USER][SERVICE]: Échec de la suppression des relations de suivi entre " + username + " et " + targetUsername);
+            // Le blocage est écrit mais les relations de suivi sont incertaines: elles seront relues
+            socialGraphCache.invalidate(username, targetUsername);
         }
     }
 
@@ -66,8 +75,11 @@ public class SocialService {
         Relationship relationship = new Relationship(userNode, targetUserNode, Relationship.RelationshipType.BLOCKS, System.currentTimeMillis());
         logger.info("[USER BLOCK][SERVICE]: Deleting relationship: " + relationship);
         boolean success = neo4jRepo.deleteRelationship(relationship);
-        if (!success) {
+        if (success) {
+            socialGraphCache.unblock(username, targetUsername);
+        } else {
             logger.errorf("[CREATE USER][SERVICE]: Failed to delete relationship in Neo4j for user: %s", username);
+            socialGraphCache.invalidate(username, targetUsername);
         }
     }
 
@@ -82,6 +94,7 @@ public class SocialService {
         Node targetUserNode = new Node(Node.NodeType.USER, targetUsername);
         Relationship relationship = new Relationship(userNode, targetUserNode, Relationship.RelationshipType.FOLLOWS, System.currentTimeMillis());
         neo4jRepo.createOrUpdateRelationship(relationship);
+        socialGraphCache.follow(username, targetUsername);
         logger.info("[USER FOLLOW][SERVICE]: Creating relationship: " + relationship);
         UserActionEvent event = new UserActionEvent();
         event.setActionType(UserActionEvent.ActionType.USER_FOLLOWED);
@@ -103,8 +116,11 @@ public class SocialService {
         Relationship relationship = new Relationship(userNode, targetUserNode, Relationship.RelationshipType.FOLLOWS, System.currentTimeMillis());
         logger.info("[USER UNFOLLOW][SERVICE]: Deleting relationship: " + relationship);
         boolean success = neo4jRepo.deleteRelationship(relationship);
-        if (!success) {
+        if (success) {
+            socialGraphCache.unfollow(username, targetUsername);
+        } else {
             logger.errorf("[CREATE USER][SERVICE]: Failed to delete relationship in Neo4j for user: %s", username);
+            socialGraphCache.invalidate(username, targetUsername);
         }
         UserActionEvent event = new UserActionEvent();
         event.setActionType(UserActionEvent.ActionType.USER_UNFOLLOWED);
@@ -209,7 +225,7 @@ public class SocialService {
      * @return true if the user is blocked, false otherwise
      */
     public boolean isUserBlocked(String username, String targetUsername) {
-        boolean isBlocked = neo4jRepo.userRelationshipExists(username, targetUsername, "BLOCKS");
+        boolean isBlocked = adjacencyContains(username, Adjacency.BLOCKED, targetUsername);
         if (isBlocked) {
             logger.info("[USER BLOCKED][SERVICE]: User " + username + " is blocked by " + targetUsername);
         } else {
@@ -226,7 +242,7 @@ public class SocialService {
      * @return true if the user is following, false otherwise
      */
     public boolean isUserFollowing(String username, String targetUsername) {
-        boolean isFollowing = neo4jRepo.userRelationshipExists(username, targetUsername, "FOLLOWS");
+        boolean isFollowing = adjacencyContains(username, Adjacency.FOLLOWS, targetUsername);
         if (isFollowing) {
             logger.info("[USER FOLLOWING][SERVICE]: User " + username + " is following " + targetUsername);
         } else {
@@ -235,6 +251,34 @@ public class SocialService {
         return isFollowing;
     }
 
+    /**
+     * Reads, in one Neo4j round trip, whether both users exist, whether one has blocked the other and
+     * whether the user already follows the target.
+     *
+     * @param username       the nodeId of the user who follows
+     * @param targetUsername the nodeId of the user being followed
+     * @return the preconditions of the follow
+     */
+    public FollowPreconditions getFollowPreconditions(String username, String targetUsername) {
+        FollowPreconditions preconditions = neo4jRepo.getFollowPreconditions(username, targetUsername);
+        logger.info("[FOLLOW PRECONDITIONS][SERVICE]: " + username + " -> " + targetUsername + ": " + preconditions);
+        return preconditions;
+    }
+
+    /**
+     * Reads, in one Neo4j round trip, whether the user and the post exist, who wrote the post, whether
+     * the user and the author have blocked one another and whether the user already likes the post.
+     *
+     * @param username the nodeId of the user who likes
+     * @param postId   the UUID of the post
+     * @return the preconditions of the like
+     */
+    public LikePreconditions getLikePreconditions(String username, String postId) {
+        LikePreconditions preconditions = neo4jRepo.getLikePreconditions(username, postId);
+        logger.info("[LIKE PRECONDITIONS][SERVICE]: " + username + " -> " + postId + ": " + preconditions);
+        return preconditions;
+    }
+
     /**
      * Retrieves the author of a post.
      *
@@ -291,7 +335,7 @@ public class SocialService {
      * @return a list of usernames who follow the user
      */
     public List<String> getUserFollowers(String userId) {
-        List<String> followers = neo4jRepo.getUserFollowers(userId);
+        List<String> followers = adjacentUsers(userId, Adjacency.FOLLOWERS);
         if (followers != null && !followers.isEmpty()) {
             logger.info("[USER FOLLOWERS][SERVICE]: Followers of user " + userId + ": " + followers);
         } else {
@@ -307,7 +351,7 @@ public class SocialService {
      * @return a list of usernames followed by the user
      */
     public List<String> getUserFollows(String userId) {
-        List<String> follows = neo4jRepo.getUserFollows(userId);
+        List<String> follows = adjacentUsers(userId, Adjacency.FOLLOWS);
         if (follows != null && !follows.isEmpty()) {
             logger.info("[USER FOLLOWS][SERVICE]: Users followed by user " + userId + ": " + follows);
         } else {
@@ -323,7 +367,7 @@ public class SocialService {
      * @return a list of usernames blocked by the user
      */
     public List<String> getUserBlockedUsers(String userId) {
-        List<String> blockedUsers = neo4jRepo.getUserBlockedUsers(userId);
+        List<String> blockedUsers = adjacentUsers(userId, Adjacency.BLOCKED);
         if (blockedUsers != null && !blockedUsers.isEmpty()) {
             logger.info("[USER BLOCKED USERS][SERVICE]: Blocked users by " + userId + ": " + blockedUsers);
         } else {
@@ -339,7 +383,7 @@ public class SocialService {
      * @return a list of usernames who block the user
      */
     public List<String> getUserBlockingUsers(String userId) {
-        List<String> blockingUsers = neo4jRepo.getUserBlockingUsers(userId);
+        List<String> blockingUsers = adjacentUsers(userId, Adjacency.BLOCKING);
         if (blockingUsers != null && !blockingUsers.isEmpty()) {
             logger.info("[USER BLOCKING USERS][SERVICE]: Users blocking " + userId + ": " + blockingUsers);
         } else {
@@ -347,4 +391,26 @@ public class SocialService {
         }
         return blockingUsers;
     }
+
+    /**
+     * Reads an adjacency list through the cache. Errors are logged and read as an empty list, as the
+     * repository does, without being cached.
+     */
+    private List<String> adjacentUsers(String userId, Adjacency adjacency) {
+        try {
+            return socialGraphCache.get(userId, adjacency, neo4jRepo::getAdjacentUsers);
+        } catch (RuntimeException e) {
+            logger.error("[ADJACENT USERS][SERVICE]: Erreur lors de la lecture des utilisateurs " + adjacency + " de " + userId + ": " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    private boolean adjacencyContains(String userId, Adjacency adjacency, String other) {
+        try {
+            return socialGraphCache.contains(userId, adjacency, other, neo4jRepo::getAdjacentUsers);
+        } catch (RuntimeException e) {
+            logger.error("[ADJACENT USERS][SERVICE]: Erreur lors de la lecture des utilisateurs " + adjacency + " de " + userId + ": " + e.getMessage());
+            return false;
+        }
+    }
 }
@@ -3,6 +3,7 @@ package com.epita;
 import com.epita.repository.SocialRepoNeo4j;
 import com.epita.repository.models.Node;
 import com.epita.repository.models.Relationship;
+import com.epita.service.SocialGraphCache;
 import io.quarkus.test.junit.QuarkusTest;
 import io.restassured.RestAssured;
 import io.restassured.config.HttpClientConfig;
@@ -30,6 +31,9 @@ public class GetSocialControllerTest {
     @Inject
     SocialRepoNeo4j socialRepoNeo4j;
 
+    @Inject
+    SocialGraphCache socialGraphCache;
+
     @Inject
     Logger logger;
 
@@ -46,6 +50,8 @@ public class GetSocialControllerTest {
         );
         logger.info("[TEST SETUP] Nettoyage de la base de données Neo4j...");
         socialRepoNeo4j.clearDatabase();
+        // Les listes en cache ne passent pas par la base vidée
+        socialGraphCache.invalidateAll();
         logger.info("[TEST SETUP] Base de données Neo4j nettoyée avec succès");
         // Création des données de test
         user1 = "testuser-" + UUID.randomUUID().toString().substring(0, 8);
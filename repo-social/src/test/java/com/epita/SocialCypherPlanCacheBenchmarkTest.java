@@ -0,0 +1,123 @@
+package com.epita;
+
+import com.epita.repository.SocialRepoNeo4j;
+import com.epita.repository.models.Node;
+import com.epita.repository.models.Relationship;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures follow and like throughput (relationships per second) of the statement of
+ * {@link SocialRepoNeo4j#createOrUpdateRelationship}, once with the values inlined by String.format,
+ * where every call is a new query text for Neo4j to plan, and once parameterized, planned once and served
+ * from the query cache. Both run the same single MERGE in one transaction, so that only the plan cache
+ * differs.
+ * Run with {@code mvn test -Dbenchmark=true [-Dbenchmark.operations=N]}; the results are published as
+ * report entries of the test (surefire XML reports).
+ */
+@QuarkusTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class SocialCypherPlanCacheBenchmarkTest {
+
+    private static final String PREFIX = "bench-";
+    private static final int OPERATIONS = Integer.getInteger("benchmark.operations", 2000);
+
+    @Inject
+    SocialRepoNeo4j neo4jRepo;
+
+    @Inject
+    Driver neo4jDriver;
+
+    private final List<Relationship> literalRelationships = new ArrayList<>();
+    private final List<Relationship> parameterizedRelationships = new ArrayList<>();
+
+    @BeforeEach
+    public void setup() {
+        cleanup();
+        for (int i = 0; i < OPERATIONS; i++) {
+            literalRelationships.add(relationship("literal", i));
+            parameterizedRelationships.add(relationship("param", i));
+        }
+    }
+
+    @AfterEach
+    public void cleanup() {
+        try (Session session = neo4jDriver.session()) {
+            session.executeWrite(tx -> tx.run("MATCH (n) WHERE n.nodeId STARTS WITH $prefix DETACH DELETE n",
+                    Map.of("prefix", PREFIX)).consume());
+        }
+    }
+
+    @Test
+    public void testFollowAndLikeThroughput(TestReporter reporter) {
+        // Warm-up of the driver and of the parameterized plans
+        for (int i = 0; i < 50; i++) {
+            neo4jRepo.createOrUpdateRelationship(relationship("warmup", i));
+        }
+
+        long start = System.nanoTime();
+        literalRelationships.forEach(this::createWithLiterals);
+        double before = relationshipsPerSecond(start);
+
+        start = System.nanoTime();
+        parameterizedRelationships.forEach(neo4jRepo::createOrUpdateRelationship);
+        double after = relationshipsPerSecond(start);
+
+        reporter.publishEntry(Map.of(
+                "operations", Integer.toString(OPERATIONS),
+                "literalRelationshipsPerSecond", String.format("%.0f", before),
+                "parameterizedRelationshipsPerSecond", String.format("%.0f", after),
+                "speedup", String.format("%.1f", after / before)));
+
+        Relationship follow = parameterizedRelationships.get(0);
+        assertTrue(neo4jRepo.relationshipExists(follow));
+        Relationship like = parameterizedRelationships.get(1);
+        assertTrue(neo4jRepo.likeRelationshipExists(like.target().nodeId(), like.source().nodeId()));
+    }
+
+    /**
+     * Follows for even operations, likes for odd ones, between nodes that are new for each operation.
+     */
+    private static Relationship relationship(String variant, int i) {
+        Node source = new Node(Node.NodeType.USER, PREFIX + variant + "-user-" + i);
+        if (i % 2 == 0) {
+            Node target = new Node(Node.NodeType.USER, PREFIX + variant + "-followed-" + i);
+            return new Relationship(source, target, Relationship.RelationshipType.FOLLOWS, System.currentTimeMillis());
+        }
+        Node target = new Node(Node.NodeType.POST, PREFIX + variant + "-post-" + i);
+        return new Relationship(source, target, Relationship.RelationshipType.LIKES, System.currentTimeMillis());
+    }
+
+    // The statement of Relationship.createCypher, with the values inlined in the query text
+    private void createWithLiterals(Relationship relationship) {
+        Node source = relationship.source();
+        Node target = relationship.target();
+        String property = relationship.type() == Relationship.RelationshipType.LIKES ? "likedAt" : "since";
+        String cypher = String.format("MERGE (a:%1$s {nodeId: '%2$s'}) ON CREATE SET a.nodeType = '%1$s' " +
+                        "MERGE (b:%3$s {nodeId: '%4$s'}) ON CREATE SET b.nodeType = '%3$s' " +
+                        "MERGE (a)-[r:%5$s]->(b) " +
+                        "SET r.%6$s = %7$d",
+                source.nodeType(), source.nodeId(), target.nodeType(), target.nodeId(),
+                relationship.type().name(), property, relationship.timestamp());
+        try (Session session = neo4jDriver.session()) {
+            session.executeWrite(tx -> tx.run(cypher).consume());
+        }
+    }
+
+    private double relationshipsPerSecond(long start) {
+        return OPERATIONS / ((System.nanoTime() - start) / 1e9);
+    }
+}
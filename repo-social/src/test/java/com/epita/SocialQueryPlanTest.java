@@ -0,0 +1,101 @@
+package com.epita;
+
+import com.epita.repository.SocialRepoNeo4j;
+import com.epita.repository.models.Node;
+import com.epita.repository.models.Relationship;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.summary.Plan;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Fails if the :User(nodeId) and :Post(nodeId) uniqueness constraints are missing, or if the plan of a
+ * query of the social graph does not seek into their indexes: a node lookup that lost its label scans
+ * all the nodes, one that lost its index scans all the nodes of the label.
+ */
+@QuarkusTest
+public class SocialQueryPlanTest {
+
+    private static final Map<String, Object> PARAMETERS = Map.of(
+            "nodeId", "node", "sourceId", "source", "targetId", "target", "timestamp", 0L,
+            "userId", "user", "postId", "post", "username", "user", "username1", "user1", "username2", "user2",
+            "rows", List.of(Map.of("sourceId", "source", "targetId", "target", "timestamp", 0L)));
+
+    @Inject
+    Driver neo4jDriver;
+
+    @Test
+    public void testNodeIdConstraintsExist() {
+        Map<String, String> constraints = new HashMap<>();
+        try (Session session = neo4jDriver.session()) {
+            session.run("SHOW CONSTRAINTS YIELD name, labelsOrTypes, properties")
+                    .forEachRemaining(constraint -> constraints.put(constraint.get("name").asString(),
+                            constraint.get("labelsOrTypes").asList().get(0) + "." + constraint.get("properties").asList().get(0)));
+        }
+        assertEquals("User.nodeId", constraints.get("user_node_id"));
+        assertEquals("Post.nodeId", constraints.get("post_node_id"));
+    }
+
+    @Test
+    public void testHotQueriesSeekIndexes() throws IllegalAccessException {
+        List<String> scanning = new ArrayList<>();
+        for (String query : hotQueries()) {
+            try (Session session = neo4jDriver.session()) {
+                Plan plan = session.run("EXPLAIN " + query, PARAMETERS).consume().plan();
+                // Every query is anchored on a nodeId: it seeks into an index and never scans
+                if (containsOperator(plan, "AllNodesScan") || containsOperator(plan, "NodeByLabelScan")
+                        || !(containsOperator(plan, "NodeIndexSeek") || containsOperator(plan, "NodeUniqueIndexSeek"))) {
+                    scanning.add(query);
+                }
+            }
+        }
+        assertTrue(scanning.isEmpty(), "Queries not seeking the nodeId indexes: " + scanning);
+    }
+
+    /**
+     * The statements of {@link SocialRepoNeo4j}, {@link Node} and {@link Relationship}, for every node
+     * and relationship type.
+     */
+    private static List<String> hotQueries() throws IllegalAccessException {
+        List<String> queries = new ArrayList<>();
+        for (Field field : SocialRepoNeo4j.class.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == String.class) {
+                field.setAccessible(true);
+                queries.add((String) field.get(null));
+            }
+        }
+        for (Node.NodeType type : Node.NodeType.values()) {
+            Node node = new Node(type, "node");
+            queries.addAll(List.of(node.createCypher(), node.findCypher(), node.deleteCypher(), Node.existsCypher(type)));
+        }
+        Node user = new Node(Node.NodeType.USER, "user");
+        Node post = new Node(Node.NodeType.POST, "post");
+        for (Relationship.RelationshipType type : Relationship.RelationshipType.values()) {
+            Node target = type == Relationship.RelationshipType.FOLLOWS || type == Relationship.RelationshipType.BLOCKS ? user : post;
+            Relationship relationship = new Relationship(user, target, type, 0L);
+            queries.addAll(List.of(relationship.createCypher(), relationship.deleteCypher(),
+                    Relationship.existsCypher(type), Relationship.createAllCypher(type)));
+        }
+        queries.add(Relationship.findFollowersCypher());
+        return queries;
+    }
+
+    // Also matches the variants, e.g. MultiNodeIndexSeek or NodeUniqueIndexSeek(Locking)
+    private static boolean containsOperator(Plan plan, String operator) {
+        if (plan.operatorType().contains(operator)) {
+            return true;
+        }
+        return plan.children().stream().anyMatch(child -> containsOperator(child, operator));
+    }
+}
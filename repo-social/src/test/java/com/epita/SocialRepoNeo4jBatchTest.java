@@ -0,0 +1,95 @@
+package com.epita;
+
+import com.epita.events.UserActionEvent;
+import com.epita.redis.PostCreatedBatchHandler;
+import com.epita.repository.SocialRepoNeo4j;
+import com.epita.repository.models.Node;
+import com.epita.repository.models.Relationship;
+import com.epita.service.SocialGraphCache;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+public class SocialRepoNeo4jBatchTest {
+
+    @Inject
+    SocialRepoNeo4j neo4jRepo;
+
+    @Inject
+    PostCreatedBatchHandler postCreatedBatchHandler;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    SocialGraphCache socialGraphCache;
+
+    private String author;
+
+    @BeforeEach
+    public void setup() {
+        neo4jRepo.clearDatabase();
+        socialGraphCache.invalidateAll();
+        author = "author-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    @Test
+    public void testCreateOrUpdateRelationshipsCreatesNodesAndRelationships() {
+        Node authorNode = new Node(Node.NodeType.USER, author);
+        List<Relationship> relationships = new ArrayList<>();
+        List<String> followers = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String follower = "follower-" + i + "-" + author;
+            followers.add(follower);
+            relationships.add(new Relationship(new Node(Node.NodeType.USER, follower), authorNode,
+                    Relationship.RelationshipType.FOLLOWS, System.currentTimeMillis()));
+        }
+        String postId = UUID.randomUUID().toString();
+        relationships.add(new Relationship(authorNode, new Node(Node.NodeType.POST, postId),
+                Relationship.RelationshipType.POSTED, System.currentTimeMillis()));
+
+        neo4jRepo.createOrUpdateRelationships(relationships);
+        // Writing them again updates the timestamps without duplicating anything
+        neo4jRepo.createOrUpdateRelationships(relationships);
+
+        assertEquals(followers.stream().sorted().toList(), neo4jRepo.getUserFollowers(author).stream().sorted().toList());
+        assertTrue(neo4jRepo.postExists(postId));
+        assertEquals(author, neo4jRepo.getPostAuthor(new Node(Node.NodeType.POST, postId)));
+    }
+
+    @Test
+    public void testPostCreationsOfOneDeliveryAreWrittenInOneBatch() {
+        DistributionSummary batchSizes = registry.get("social.post_created.batch_size").summary();
+        long batchesBefore = batchSizes.count();
+        double relationshipsBefore = batchSizes.totalAmount();
+
+        List<String> postIds = new ArrayList<>();
+        List<UserActionEvent> events = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            String postId = UUID.randomUUID().toString();
+            postIds.add(postId);
+            UserActionEvent event = new UserActionEvent();
+            event.setActionType(UserActionEvent.ActionType.POST_CREATED);
+            event.setUsername(author);
+            event.setPostId(postId);
+            events.add(event);
+        }
+        postCreatedBatchHandler.accept(events);
+
+        assertEquals(batchesBefore + 1, batchSizes.count());
+        assertEquals(50, batchSizes.totalAmount() - relationshipsBefore);
+        for (String postId : postIds) {
+            assertTrue(neo4jRepo.postRelationshipExists(postId, author));
+        }
+    }
+}
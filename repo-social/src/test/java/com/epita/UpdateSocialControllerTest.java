@@ -3,6 +3,8 @@ package com.epita;
 import com.epita.repository.SocialRepoNeo4j;
 import com.epita.repository.models.Node;
 import com.epita.repository.models.Relationship;
+import com.epita.service.SocialGraphCache;
+import com.epita.service.SocialService;
 import io.quarkus.test.junit.QuarkusTest;
 import io.restassured.RestAssured;
 import io.restassured.config.HttpClientConfig;
@@ -25,6 +27,12 @@ public class UpdateSocialControllerTest {
     @Inject
     SocialRepoNeo4j neo4jRepo;
 
+    @Inject
+    SocialGraphCache socialGraphCache;
+
+    @Inject
+    SocialService socialService;
+
     @Inject
     Logger logger;
 
@@ -43,6 +51,8 @@ public class UpdateSocialControllerTest {
 
         // Nettoyage de la base
         neo4jRepo.clearDatabase();
+        // Les listes en cache ne passent pas par la base vidée
+        socialGraphCache.invalidateAll();
 
         // Création des données de test
         user1 = "testuser1-" + UUID.randomUUID().toString().substring(0, 8);
@@ -105,6 +115,63 @@ public class UpdateSocialControllerTest {
                 .statusCode(404);
     }
 
+    @Test
+    public void testCachedAdjacencyFollowsUpdates() {
+        // Les listes sont chargées en cache avant les modifications
+        assertFalse(socialService.getUserFollowers(user2).contains(user1));
+        assertFalse(socialService.isUserFollowing(user1, user2));
+
+        given()
+                .contentType("application/json")
+                .when()
+                .post("/social/" + user1 + "/follow/" + user2)
+                .then()
+                .statusCode(200);
+        assertTrue(socialService.getUserFollowers(user2).contains(user1));
+        assertTrue(socialService.getUserFollows(user1).contains(user2));
+
+        given()
+                .contentType("application/json")
+                .when()
+                .post("/social/" + user2 + "/block/" + user1)
+                .then()
+                .statusCode(200);
+        assertFalse(socialService.getUserFollowers(user2).contains(user1));
+        assertTrue(socialService.getUserBlockedUsers(user2).contains(user1));
+        assertTrue(socialService.getUserBlockingUsers(user1).contains(user2));
+
+        given()
+                .contentType("application/json")
+                .when()
+                .post("/social/" + user2 + "/unblock/" + user1)
+                .then()
+                .statusCode(200);
+        assertFalse(socialService.isUserBlocked(user2, user1));
+        assertFalse(socialService.getUserBlockingUsers(user1).contains(user2));
+    }
+
+    @Test
+    public void testFollowBlockedUser() {
+        Node userNode1 = new Node(Node.NodeType.USER, user1);
+        Node userNode2 = new Node(Node.NodeType.USER, user2);
+        neo4jRepo.createOrUpdateRelationship(new Relationship(userNode2, userNode1, Relationship.RelationshipType.BLOCKS, System.currentTimeMillis()));
+
+        // Le blocage est vérifié dans les deux sens
+        given()
+                .contentType("application/json")
+                .when()
+                .post("/social/" + user1 + "/follow/" + user2)
+                .then()
+                .statusCode(403);
+        given()
+                .contentType("application/json")
+                .when()
+                .post("/social/" + user2 + "/follow/" + user1)
+                .then()
+                .statusCode(403);
+        assertFalse(neo4jRepo.userRelationshipExists(user1, user2, "FOLLOWS"));
+    }
+
     @Test
     public void testUnfollowUser() {
         // Prérequis: l'utilisateur suit déjà
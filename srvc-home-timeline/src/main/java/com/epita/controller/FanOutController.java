@@ -0,0 +1,93 @@
+package com.epita.controller;
+
+import com.epita.dto.contracts.UpdateFanOutThresholdContract;
+import com.epita.dto.responses.FanOutThresholdResponse;
+import com.epita.service.FanOutPolicy;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
+import org.jboss.logging.Logger;
+
+import java.util.Set;
+
+/**
+ * REST controller to tune the hybrid push/pull fan-out of home timelines.
+ */
+@Path("/timelines/fanout")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class FanOutController {
+
+    private static final Set<String> MODES = Set.of("PUSH", "PULL", "AUTO");
+
+    @Inject
+    FanOutPolicy fanOutPolicy;
+
+    @Inject
+    Logger logger;
+
+    @Operation(summary = "Get the fan-out threshold",
+            description = "Follower count from which the posts of an author are merged at read time instead of being pushed")
+    @APIResponse(responseCode = "200", description = "Threshold retrieved successfully")
+    @GET
+    @Path("/threshold")
+    public Response getThreshold() {
+        return Response.ok(new FanOutThresholdResponse(fanOutPolicy.getThreshold())).build();
+    }
+
+    @Operation(summary = "Update the fan-out threshold",
+            description = "Changes the threshold of every instance at runtime")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description = "Threshold updated successfully"),
+            @APIResponse(responseCode = "400", description = "Invalid threshold")
+    })
+    @PUT
+    @Path("/threshold")
+    public Response updateThreshold(UpdateFanOutThresholdContract contract) {
+        if (contract == null || contract.getThreshold() == null || contract.getThreshold() < 0) {
+            logger.error("[UPDATE FANOUT THRESHOLD][CONTROLLER]: threshold is null or negative");
+            return Response.status(Response.Status.BAD_REQUEST).entity("Threshold must be a positive number").build();
+        }
+
+        logger.info("[UPDATE FANOUT THRESHOLD][CONTROLLER]: Setting fan-out threshold to " + contract.getThreshold());
+        fanOutPolicy.setThreshold(contract.getThreshold());
+        return Response.ok(new FanOutThresholdResponse(fanOutPolicy.getThreshold())).build();
+    }
+
+    @Operation(summary = "Get the fan-out mode of an author",
+            description = "Retrieve the follower count, the override and the effective fan-out mode of an author")
+    @APIResponse(responseCode = "200", description = "Fan-out mode retrieved successfully")
+    @GET
+    @Path("/{username}")
+    public Response getMode(@PathParam("username") String username) {
+        if (username == null || username.isEmpty()) {
+            logger.error("[GET FANOUT MODE][CONTROLLER]: username is null or empty");
+            return Response.status(Response.Status.BAD_REQUEST).entity("Username cannot be empty").build();
+        }
+        return Response.ok(fanOutPolicy.describe(username)).build();
+    }
+
+    @Operation(summary = "Force the fan-out mode of an author",
+            description = "PUSH or PULL overrides the threshold for this author, AUTO removes the override")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description = "Fan-out mode updated successfully"),
+            @APIResponse(responseCode = "400", description = "Invalid mode")
+    })
+    @PUT
+    @Path("/{username}/{mode}")
+    public Response updateMode(@PathParam("username") String username, @PathParam("mode") String mode) {
+        if (username == null || username.isEmpty() || mode == null || !MODES.contains(mode.toUpperCase())) {
+            logger.error("[UPDATE FANOUT MODE][CONTROLLER]: username is empty or mode is not PUSH, PULL or AUTO");
+            return Response.status(Response.Status.BAD_REQUEST).entity("Mode must be PUSH, PULL or AUTO").build();
+        }
+
+        String override = mode.equalsIgnoreCase("AUTO") ? null : mode.toUpperCase();
+        logger.info("[UPDATE FANOUT MODE][CONTROLLER]: Setting fan-out mode of " + username + " to " + mode.toUpperCase());
+        fanOutPolicy.setMode(username, override);
+        return Response.ok(fanOutPolicy.describe(username)).build();
+    }
+}
@@ -5,8 +5,9 @@ import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 
-import com.epita.repository.entity.HomeTimelines;
+import com.epita.dto.responses.HomeTimelinePageResponse;
 import com.epita.service.HomeTimelineService;
+import com.epita.service.TimelineCursor;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
@@ -24,21 +25,37 @@ public class HomeTimelineController {
     Logger logger;
 
     @Operation(summary = "Get home timeline for a user",
-            description = "Retrieve the home timeline for a specific user")
+            description = "Retrieve one page of the home timeline for a specific user. "
+                    + "Pass the nextCursor of a page as 'before' to get the following one")
     @APIResponses(value = {
             @APIResponse(responseCode = "200", description = "Home timeline retrieved successfully"),
+            @APIResponse(responseCode = "400", description = "Invalid limit or cursor"),
             @APIResponse(responseCode = "404", description = "User not found")
     })
     @GET
     @Path("/{username}")
-    public Response getHomeTimeline(@PathParam("username") String username) {
+    public Response getHomeTimeline(@PathParam("username") String username,
+                                    @QueryParam("limit") Integer limit,
+                                    @QueryParam("before") String before) {
         if (username == null || username.isEmpty()) {
             logger.error("[GET USER TIMELINE][CONTROLLER]: username is null or empty");
             return Response.status(Response.Status.BAD_REQUEST).entity("Username cannot be empty").build();
         }
+        if (limit != null && limit < 1) {
+            logger.error("[GET USER TIMELINE][CONTROLLER]: limit must be positive");
+            return Response.status(Response.Status.BAD_REQUEST).entity("Limit must be positive").build();
+        }
+
+        TimelineCursor cursor;
+        try {
+            cursor = TimelineCursor.parse(before);
+        } catch (IllegalArgumentException e) {
+            logger.error("[GET USER TIMELINE][CONTROLLER]: " + e.getMessage());
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        }
 
         logger.info("[GET USER TIMELINE][CONTROLLER]: Retrieving timeline for username: " + username);
-        HomeTimelines homeTimeline = hometimelineservice.getTimeline(username);
+        HomeTimelinePageResponse homeTimeline = hometimelineservice.getHomeTimeline(username, limit, cursor);
 
         if (homeTimeline != null) {
             return Response.ok(homeTimeline).build();
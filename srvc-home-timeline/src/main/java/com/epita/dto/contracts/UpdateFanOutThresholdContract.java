@@ -0,0 +1,16 @@
+package com.epita.dto.contracts;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class UpdateFanOutThresholdContract {
+    @Schema(description = "follower count from which authors are no longer fanned out", example = "10000", minimum = "0")
+    private Long threshold;
+}
@@ -0,0 +1,17 @@
+package com.epita.dto.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class FanOutModeResponse {
+    private String username;
+    private long followersCount;
+    private String override; // "PUSH", "PULL" or null when the threshold applies
+    private String mode;     // effective mode, "PUSH" or "PULL"
+}
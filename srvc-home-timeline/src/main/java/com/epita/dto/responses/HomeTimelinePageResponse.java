@@ -0,0 +1,21 @@
+package com.epita.dto.responses;
+
+import com.epita.repository.entity.TimelinePost;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Date;
+import java.util.List;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class HomeTimelinePageResponse {
+    private String username;
+    private List<TimelinePost> posts;
+    private Date lastUpdated;
+    private String nextCursor; // null on the last page
+}
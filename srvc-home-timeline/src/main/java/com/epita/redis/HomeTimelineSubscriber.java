@@ -1,21 +1,19 @@
 package com.epita.redis;
 
+import com.epita.events.EventSubscription;
 import com.epita.events.UserActionEvent;
+import com.epita.events.UserActionEventBus;
 import com.epita.service.HomeTimelineService;
-import io.quarkus.redis.datasource.RedisDataSource;
-import io.quarkus.redis.datasource.pubsub.PubSubCommands;
 import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
 import org.jboss.logging.Logger;
 
-import static io.quarkus.mongodb.runtime.dns.MongoDnsClientProvider.vertx;
-
 @Startup
 @ApplicationScoped
 public class HomeTimelineSubscriber implements Consumer<UserActionEvent> {
@@ -23,35 +21,35 @@ public class HomeTimelineSubscriber implements Consumer<UserActionEvent> {
     @Inject
     HomeTimelineService hometimelineservice;
 
-    private final List<PubSubCommands.RedisSubscriber> subscribers = new ArrayList<>();
+    @Inject
+    UserActionEventBus eventBus;
+
+    private EventSubscription subscription;
 
     @Inject
     Logger logger;
 
-    public HomeTimelineSubscriber(RedisDataSource ds) {
-        System.out.println("Subscribing to Redis channel...");
-        this.subscribers.add(ds.pubsub(UserActionEvent.class).subscribe(UserActionEvent.ActionType.POST_CREATED.getValue(), this));
-        this.subscribers.add(ds.pubsub(UserActionEvent.class).subscribe(UserActionEvent.ActionType.POST_DELETED.getValue(), this));
-        this.subscribers.add(ds.pubsub(UserActionEvent.class).subscribe(UserActionEvent.ActionType.POST_UNLIKED.getValue(), this));
-        this.subscribers.add(ds.pubsub(UserActionEvent.class).subscribe(UserActionEvent.ActionType.POST_LIKED.getValue(), this));
-        this.subscribers.add(ds.pubsub(UserActionEvent.class).subscribe(UserActionEvent.ActionType.USER_FOLLOWED.getValue(), this));
-        this.subscribers.add(ds.pubsub(UserActionEvent.class).subscribe(UserActionEvent.ActionType.USER_UNFOLLOWED.getValue(), this));
-        System.out.println("Subscribed successfully.");
+    @PostConstruct
+    void subscribe() {
+        // Events of the same user are handled in order, events of different users in parallel
+        this.subscription = eventBus.subscribe(List.of(
+                UserActionEvent.ActionType.POST_CREATED,
+                UserActionEvent.ActionType.POST_DELETED,
+                UserActionEvent.ActionType.POST_UNLIKED,
+                UserActionEvent.ActionType.POST_LIKED,
+                UserActionEvent.ActionType.USER_FOLLOWED,
+                UserActionEvent.ActionType.USER_UNFOLLOWED), UserActionEvent::getUsername, this);
+        logger.info("[SUBSCRIBE][SUBSCRIBER]: Subscribed to home timeline events");
     }
 
+    /**
+     * Runs on the event dispatcher. A failure is logged by the bus and, with the streams transport,
+     * leaves the event pending so that it is handled again.
+     */
     @Override
     public void accept(UserActionEvent event) {
         logger.infof("[%s][SUBSCRIBER]: Received event: %s", event.getActionType(), event);
-        vertx.executeBlocking(future -> {
-            try
-            {
-                handleEvent(event);
-                future.complete();
-            } catch (Exception e) {
-                logger.errorf("[%s][SUBSCRIBER]: Error processing event: %s, error: %s", event.getActionType(), event, e.getMessage());
-                future.fail(e);
-            }
-        });
+        handleEvent(event);
     }
 
     /**
@@ -92,7 +90,7 @@ public class HomeTimelineSubscriber implements Consumer<UserActionEvent> {
 
     @PreDestroy
     public void terminate() {
-        subscribers.forEach(PubSubCommands.RedisSubscriber::unsubscribe);
+        subscription.unsubscribe();
         logger.info("[DELETE POST][SUBSCRIBER]: Unsubscribed from CREATE_POST events.");
     }
 }
@@ -0,0 +1,39 @@
+package com.epita.repository;
+
+import com.epita.repository.entity.FanOutSettings;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import io.quarkus.mongodb.panache.PanacheMongoRepositoryBase;
+import jakarta.enterprise.context.ApplicationScoped;
+
+@ApplicationScoped
+public class FanOutSettingsRepository implements PanacheMongoRepositoryBase<FanOutSettings, String> {
+    public static final String GLOBAL = "global";
+
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+
+    /**
+     * @return the fan-out settings shared by every instance, or null if they were never changed at runtime
+     */
+    public FanOutSettings findSettings() {
+        return findById(GLOBAL);
+    }
+
+    /**
+     * Stores the fan-out threshold shared by every instance and bumps the settings version.
+     *
+     * @param threshold the follower count from which authors are pulled
+     */
+    public void saveThreshold(long threshold) {
+        mongoCollection().updateOne(Filters.eq("_id", GLOBAL),
+                Updates.combine(Updates.set("threshold", threshold), Updates.inc("version", 1L)), UPSERT);
+    }
+
+    /**
+     * Bumps the settings version, telling every instance that the set of pulled authors changed.
+     */
+    public void bumpVersion() {
+        mongoCollection().updateOne(Filters.eq("_id", GLOBAL), Updates.inc("version", 1L), UPSERT);
+    }
+}
@@ -1,12 +1,231 @@
 package com.epita.repository;
 
+import com.epita.repository.codec.TimelinePostCodec;
 import com.epita.repository.entity.HomeTimelines;
+import com.epita.repository.entity.TimelinePost;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.PushOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import io.quarkus.arc.lookup.LookupIfProperty;
 import io.quarkus.mongodb.panache.PanacheMongoRepositoryBase;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
 @ApplicationScoped
-public class HomeTimelineRepository implements PanacheMongoRepositoryBase<HomeTimelines, String> {
+@LookupIfProperty(name = "timeline.home.store", stringValue = "mongo", lookupIfMissing = true)
+public class HomeTimelineRepository implements PanacheMongoRepositoryBase<HomeTimelines, String>, TimelineStore {
+    public static final String POST_ID_INDEX = "posts_p_idx";
+    public static final String LEGACY_POST_ID_INDEX = "posts_postId_idx";
+
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+    private static final int MIGRATION_BATCH_SIZE = 500;
+
+    @Override
     public HomeTimelines findTimeline(String username) {
         return findById(username);
     }
+
+    /**
+     * Fetches one page of a timeline. The entries are filtered and sliced by Mongo, so only the page
+     * leaves the database. Entries are kept sorted by date then postId (most recent first), which makes
+     * the (date, postId) pair of the last entry of a page the start of the next one.
+     *
+     * @param username     the owner of the timeline
+     * @param beforeDate   only entries older than this date are returned, or null for the first page
+     * @param beforePostId the postId of the last entry of the previous page, to break date ties
+     * @param limit        the maximum number of entries returned
+     * @return the timeline holding at most {@code limit} entries, or null if it does not exist
+     */
+    @Override
+    public HomeTimelines findPage(String username, Date beforeDate, String beforePostId, int limit) {
+        Object posts = "$posts";
+        if (beforeDate != null) {
+            posts = new Document("$filter", new Document("input", "$posts")
+                    .append("as", "p")
+                    .append("cond", new Document("$or", List.of(
+                            new Document("$lt", List.of("$$p." + TimelinePostCodec.DATE, beforeDate)),
+                            new Document("$and", List.of(
+                                    new Document("$eq", List.of("$$p." + TimelinePostCodec.DATE, beforeDate)),
+                                    new Document("$lt", List.of("$$p." + TimelinePostCodec.POST_ID, TimelinePostCodec.postIdValue(beforePostId)))
+                            ))
+                    ))));
+        }
+        return mongoCollection().aggregate(List.of(
+                Aggregates.match(Filters.eq("_id", username)),
+                Aggregates.project(Projections.fields(
+                        Projections.include("lastUpdated"),
+                        Projections.computed("posts", new Document("$slice", List.of(
+                                new Document("$ifNull", List.of(posts, List.of())), limit)))
+                ))
+        ), HomeTimelines.class).first();
+    }
+
+    /**
+     * Appends entries to a timeline in a single atomic update. Mongo keeps the array sorted by date then
+     * postId (most recent first) and drops everything past {@code maxEntries}, so the document size stays
+     * bounded. The timeline is created if it does not exist yet.
+     *
+     * @param username   the owner of the timeline
+     * @param posts      the entries to add
+     * @param maxEntries the maximum number of entries kept in the timeline
+     */
+    @Override
+    public void pushPosts(String username, List<TimelinePost> posts, int maxEntries) {
+        mongoCollection().updateOne(Filters.eq("_id", username), pushUpdate(posts, maxEntries), UPSERT);
+    }
+
+    /**
+     * Appends the same entries to many timelines. Updates are grouped into unordered
+     * {@code bulkWrite} batches of {@code batchSize}, and each one upserts a bounded timeline
+     * the same way as {@link #pushPosts(String, List, int)}.
+     *
+     * @param usernames  the owners of the timelines
+     * @param posts      the entries to add
+     * @param maxEntries the maximum number of entries kept in each timeline
+     * @param batchSize  the maximum number of updates sent in one bulk write
+     */
+    @Override
+    public void pushPostsToAll(Collection<String> usernames, List<TimelinePost> posts, int maxEntries, int batchSize) {
+        Bson update = pushUpdate(posts, maxEntries);
+        List<UpdateOneModel<HomeTimelines>> batch = new ArrayList<>(Math.min(batchSize, usernames.size()));
+        for (String username : usernames) {
+            batch.add(new UpdateOneModel<>(Filters.eq("_id", username), update, UPSERT));
+            if (batch.size() >= batchSize) {
+                mongoCollection().bulkWrite(batch, UNORDERED);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            mongoCollection().bulkWrite(batch, UNORDERED);
+        }
+    }
+
+    @Override
+    public void pushPostsEach(Map<String, List<TimelinePost>> postsByUsername, int maxEntries, int batchSize) {
+        List<UpdateOneModel<HomeTimelines>> batch = new ArrayList<>(Math.min(batchSize, postsByUsername.size()));
+        for (Map.Entry<String, List<TimelinePost>> timeline : postsByUsername.entrySet()) {
+            batch.add(new UpdateOneModel<>(Filters.eq("_id", timeline.getKey()), pushUpdate(timeline.getValue(), maxEntries), UPSERT));
+            if (batch.size() >= batchSize) {
+                mongoCollection().bulkWrite(batch, UNORDERED);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            mongoCollection().bulkWrite(batch, UNORDERED);
+        }
+    }
+
+    private Bson pushUpdate(List<TimelinePost> posts, int maxEntries) {
+        return Updates.combine(
+                Updates.pushEach("posts", posts, new PushOptions()
+                        .sortDocument(Sorts.descending(TimelinePostCodec.DATE, TimelinePostCodec.POST_ID))
+                        .slice(maxEntries)),
+                Updates.set("lastUpdated", new Date())
+        );
+    }
+
+    /**
+     * Removes every occurrence of an entry from the timelines that contain it with a single
+     * server-side {@code $pull}. The filter goes through the multikey index on {@code posts.p},
+     * so only the timelines holding the post are touched.
+     *
+     * @param postId   the ID of the post
+     * @param authorId the author (or liker) of the entry
+     * @param type     the entry type ("POSTED" or "LIKED")
+     * @return the number of timelines that were modified
+     */
+    public long pullPost(String postId, String authorId, String type) {
+        Document entry = TimelinePostCodec.entry(postId, authorId, type);
+        return mongoCollection().updateMany(
+                Filters.elemMatch("posts", entry),
+                Updates.combine(
+                        Updates.pull("posts", entry),
+                        Updates.set("lastUpdated", new Date())
+                )
+        ).getModifiedCount();
+    }
+
+    /**
+     * Same as {@link #pullPost(String, String, String)}: the index finds the timelines, so the
+     * candidates are never fetched.
+     */
+    @Override
+    public long pullPost(String postId, String authorId, String type, Supplier<Collection<String>> candidates) {
+        return pullPost(postId, authorId, type);
+    }
+
+    /**
+     * Removes the entries of an author from a timeline with a server-side {@code $pull}. The timeline is
+     * only matched when it holds such an entry, so {@code lastUpdated} is left alone otherwise.
+     *
+     * @param username the owner of the timeline
+     * @param authorId the author (or liker) whose entries are removed
+     * @return true if the timeline was modified
+     */
+    @Override
+    public boolean pullAuthor(String username, String authorId) {
+        return mongoCollection().updateOne(
+                Filters.and(Filters.eq("_id", username), Filters.eq("posts." + TimelinePostCodec.AUTHOR_ID, authorId)),
+                Updates.combine(
+                        Updates.pull("posts", new Document(TimelinePostCodec.AUTHOR_ID, authorId)),
+                        Updates.set("lastUpdated", new Date())
+                )
+        ).getModifiedCount() > 0;
+    }
+
+    /**
+     * Creates the multikey index on {@code posts.p} used by post removals, and drops the index on the
+     * legacy {@code posts.postId} field.
+     */
+    public void ensurePostIndex() {
+        mongoCollection().createIndex(Indexes.ascending("posts." + TimelinePostCodec.POST_ID), new IndexOptions().name(POST_ID_INDEX));
+        for (Document index : mongoCollection().listIndexes()) {
+            if (LEGACY_POST_ID_INDEX.equals(index.getString("name"))) {
+                mongoCollection().dropIndex(LEGACY_POST_ID_INDEX);
+            }
+        }
+    }
+
+    /**
+     * Rewrites the timelines still holding entries in the legacy {@code {postId, authorId, type, date}}
+     * layout into the compact one. Each timeline is only replaced if it was not written in between,
+     * otherwise it is left for the next run (the codec reads both layouts).
+     *
+     * @return the number of timelines rewritten
+     */
+    public long migrateCompactPosts() {
+        long migrated = 0;
+        List<UpdateOneModel<HomeTimelines>> batch = new ArrayList<>();
+        for (HomeTimelines timeline : mongoCollection().find(Filters.exists("posts.postId"))) {
+            Bson unchanged = timeline.getLastUpdated() == null
+                    ? Filters.and(Filters.eq("_id", timeline.getUsername()), Filters.exists("lastUpdated", false))
+                    : Filters.and(Filters.eq("_id", timeline.getUsername()), Filters.eq("lastUpdated", timeline.getLastUpdated()));
+            batch.add(new UpdateOneModel<>(unchanged, Updates.set("posts", timeline.getPosts())));
+            if (batch.size() >= MIGRATION_BATCH_SIZE) {
+                migrated += mongoCollection().bulkWrite(batch, UNORDERED).getModifiedCount();
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            migrated += mongoCollection().bulkWrite(batch, UNORDERED).getModifiedCount();
+        }
+        return migrated;
+    }
 }
@@ -0,0 +1,41 @@
+package com.epita.repository;
+
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+
+/**
+ * Creates the indexes the home timeline queries rely on when the service starts.
+ * Index creation is idempotent, so this also acts as the migration for existing databases,
+ * together with the one-off backfill of follower counters and the rewrite of timeline entries
+ * into the compact layout.
+ */
+@Startup
+@ApplicationScoped
+public class MongoIndexInitializer {
+
+    @Inject
+    UserActivityRepository userActivityRepository;
+
+    @Inject
+    HomeTimelineRepository homeTimelineRepository;
+
+    @Inject
+    Logger logger;
+
+    @PostConstruct
+    void init() {
+        logger.info("[MONGO INDEXES][STARTUP]: Building follower index on UserActivity.followed");
+        userActivityRepository.ensureFollowerIndex();
+        logger.info("[MONGO INDEXES][STARTUP]: Migrating HomeTimelines.posts to the compact layout");
+        long migrated = homeTimelineRepository.migrateCompactPosts();
+        logger.info("[MONGO INDEXES][STARTUP]: " + migrated + " timelines migrated");
+        logger.info("[MONGO INDEXES][STARTUP]: Building post index on HomeTimelines.posts.p");
+        homeTimelineRepository.ensurePostIndex();
+        logger.info("[MONGO INDEXES][STARTUP]: Migrating UserActivity.followersCount");
+        userActivityRepository.migrateFollowersCount();
+        logger.info("[MONGO INDEXES][STARTUP]: Indexes are up to date");
+    }
+}
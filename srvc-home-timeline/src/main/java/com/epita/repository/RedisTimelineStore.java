@@ -0,0 +1,226 @@
+package com.epita.repository;
+
+import com.epita.repository.entity.HomeTimelines;
+import com.epita.repository.entity.TimelinePost;
+import io.quarkus.arc.lookup.LookupIfProperty;
+import io.vertx.mutiny.redis.client.Command;
+import io.vertx.mutiny.redis.client.Redis;
+import io.vertx.mutiny.redis.client.Request;
+import io.vertx.mutiny.redis.client.Response;
+import io.vertx.redis.client.ResponseType;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Home timelines stored as Redis sorted sets. Each timeline is a ZSET scored by the entry date (epoch
+ * millis) whose members are {@code postId|authorId|type}; Redis orders entries sharing a date by member,
+ * hence by postId. The date of the last write is kept next to it as a plain string.
+ * Fan-out writes are pipelined: one batch of ZADD / ZREMRANGEBYRANK / SET per group of timelines.
+ */
+@ApplicationScoped
+@LookupIfProperty(name = "timeline.home.store", stringValue = "redis")
+public class RedisTimelineStore implements TimelineStore {
+    private static final String KEY_PREFIX = "home-timeline:";
+    private static final String UPDATED_KEY_PREFIX = "home-timeline-updated:";
+    private static final char SEPARATOR = '|';
+    // Members are postId|authorId|type: removes the members of ARGV[1] and touches the timeline if any was removed
+    private static final String PULL_AUTHOR_SCRIPT = """
+            local removed = 0
+            for _, member in ipairs(redis.call('ZRANGE', KEYS[1], 0, -1)) do
+                if string.match(member, '^[^|]*|(.*)|[^|]*$') == ARGV[1] then
+                    removed = removed + redis.call('ZREM', KEYS[1], member)
+                end
+            end
+            if removed > 0 then
+                redis.call('SET', KEYS[2], ARGV[2])
+            end
+            return removed
+            """;
+
+    @Inject
+    Redis redis;
+
+    @Override
+    public HomeTimelines findTimeline(String username) {
+        List<Response> responses = redis.batchAndAwait(List.of(
+                Request.cmd(Command.ZRANGE).arg(key(username)).arg(0).arg(-1).arg("REV").arg("WITHSCORES"),
+                Request.cmd(Command.GET).arg(updatedKey(username))
+        ));
+        List<TimelinePost> posts = toPosts(responses.get(0));
+        Response updated = responses.get(1);
+        if (posts.isEmpty() && updated == null) {
+            return null;
+        }
+        return new HomeTimelines(username, posts, updated == null ? null : new Date(updated.toLong()));
+    }
+
+    @Override
+    public HomeTimelines findPage(String username, Date beforeDate, String beforePostId, int limit) {
+        List<Request> requests = new ArrayList<>(3);
+        if (beforeDate == null) {
+            requests.add(Request.cmd(Command.ZRANGE).arg(key(username)).arg("+inf").arg("-inf")
+                    .arg("BYSCORE").arg("REV").arg("LIMIT").arg(0).arg(limit).arg("WITHSCORES"));
+        } else {
+            // Entries sharing the cursor date are few: fetch them all and drop the ones before the cursor
+            requests.add(Request.cmd(Command.ZRANGE).arg(key(username)).arg(beforeDate.getTime()).arg(beforeDate.getTime())
+                    .arg("BYSCORE").arg("REV").arg("WITHSCORES"));
+            requests.add(Request.cmd(Command.ZRANGE).arg(key(username)).arg("(" + beforeDate.getTime()).arg("-inf")
+                    .arg("BYSCORE").arg("REV").arg("LIMIT").arg(0).arg(limit).arg("WITHSCORES"));
+        }
+        requests.add(Request.cmd(Command.GET).arg(updatedKey(username)));
+        List<Response> responses = redis.batchAndAwait(requests);
+
+        Response updated = responses.get(responses.size() - 1);
+        List<TimelinePost> posts = new ArrayList<>(limit);
+        if (beforeDate == null) {
+            posts.addAll(toPosts(responses.get(0)));
+        } else {
+            for (TimelinePost post : toPosts(responses.get(0))) {
+                if (post.getPostId().compareTo(beforePostId) < 0) {
+                    posts.add(post);
+                }
+            }
+            posts.addAll(toPosts(responses.get(1)));
+        }
+        if (posts.isEmpty() && updated == null) {
+            return null;
+        }
+        if (posts.size() > limit) {
+            posts = new ArrayList<>(posts.subList(0, limit));
+        }
+        return new HomeTimelines(username, posts, updated == null ? null : new Date(updated.toLong()));
+    }
+
+    @Override
+    public void pushPosts(String username, List<TimelinePost> posts, int maxEntries) {
+        pushPostsToAll(List.of(username), posts, maxEntries, 1);
+    }
+
+    @Override
+    public void pushPostsToAll(Collection<String> usernames, List<TimelinePost> posts, int maxEntries, int batchSize) {
+        String now = Long.toString(System.currentTimeMillis());
+        List<Request> batch = new ArrayList<>();
+        int timelines = 0;
+        for (String username : usernames) {
+            addPush(batch, username, posts, maxEntries, now);
+            if (++timelines >= batchSize) {
+                redis.batchAndAwait(batch);
+                batch.clear();
+                timelines = 0;
+            }
+        }
+        if (!batch.isEmpty()) {
+            redis.batchAndAwait(batch);
+        }
+    }
+
+    @Override
+    public void pushPostsEach(Map<String, List<TimelinePost>> postsByUsername, int maxEntries, int batchSize) {
+        String now = Long.toString(System.currentTimeMillis());
+        List<Request> batch = new ArrayList<>();
+        int timelines = 0;
+        for (Map.Entry<String, List<TimelinePost>> timeline : postsByUsername.entrySet()) {
+            addPush(batch, timeline.getKey(), timeline.getValue(), maxEntries, now);
+            if (++timelines >= batchSize) {
+                redis.batchAndAwait(batch);
+                batch.clear();
+                timelines = 0;
+            }
+        }
+        if (!batch.isEmpty()) {
+            redis.batchAndAwait(batch);
+        }
+    }
+
+    private void addPush(List<Request> batch, String username, List<TimelinePost> posts, int maxEntries, String now) {
+        Request zadd = Request.cmd(Command.ZADD).arg(key(username));
+        for (TimelinePost post : posts) {
+            zadd.arg(post.dateMillis()).arg(member(post));
+        }
+        batch.add(zadd);
+        // Ranks are ascending: drop everything below the maxEntries most recent entries
+        batch.add(Request.cmd(Command.ZREMRANGEBYRANK).arg(key(username)).arg(0).arg(-(maxEntries + 1)));
+        batch.add(Request.cmd(Command.SET).arg(updatedKey(username)).arg(now));
+    }
+
+    @Override
+    public long pullPost(String postId, String authorId, String type, Supplier<Collection<String>> candidates) {
+        String member = postId + SEPARATOR + authorId + SEPARATOR + type;
+        String now = Long.toString(System.currentTimeMillis());
+        List<Request> batch = new ArrayList<>();
+        List<String> usernames = new ArrayList<>(candidates.get());
+        for (String username : usernames) {
+            batch.add(Request.cmd(Command.ZREM).arg(key(username)).arg(member));
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        List<Response> removed = redis.batchAndAwait(batch);
+
+        long modified = 0;
+        List<Request> touch = new ArrayList<>();
+        for (int i = 0; i < removed.size(); i++) {
+            if (removed.get(i).toLong() > 0) {
+                modified++;
+                touch.add(Request.cmd(Command.SET).arg(updatedKey(usernames.get(i))).arg(now));
+            }
+        }
+        if (!touch.isEmpty()) {
+            redis.batchAndAwait(touch);
+        }
+        return modified;
+    }
+
+    /**
+     * Removes the entries of an author with a Lua script, which Redis runs atomically with respect to
+     * the fan-out writes of the same timeline.
+     */
+    @Override
+    public boolean pullAuthor(String username, String authorId) {
+        Response removed = redis.sendAndAwait(Request.cmd(Command.EVAL).arg(PULL_AUTHOR_SCRIPT).arg(2)
+                .arg(key(username)).arg(updatedKey(username))
+                .arg(authorId).arg(System.currentTimeMillis()));
+        return removed != null && removed.toLong() > 0;
+    }
+
+    private static String key(String username) {
+        return KEY_PREFIX + username;
+    }
+
+    private static String updatedKey(String username) {
+        return UPDATED_KEY_PREFIX + username;
+    }
+
+    private static String member(TimelinePost post) {
+        return post.getPostId() + SEPARATOR + post.getAuthorId() + SEPARATOR + post.getType();
+    }
+
+    /**
+     * Decodes a ZRANGE ... WITHSCORES reply, either flat (RESP2: member, score, ...) or made of
+     * [member, score] pairs (RESP3).
+     */
+    private static List<TimelinePost> toPosts(Response range) {
+        List<TimelinePost> posts = new ArrayList<>();
+        if (range == null || range.size() == 0) {
+            return posts;
+        }
+        boolean pairs = range.get(0).type() == ResponseType.MULTI;
+        int step = pairs ? 1 : 2;
+        for (int i = 0; i < range.size(); i += step) {
+            String member = pairs ? range.get(i).get(0).toString() : range.get(i).toString();
+            double score = pairs ? range.get(i).get(1).toDouble() : range.get(i + 1).toDouble();
+            int first = member.indexOf(SEPARATOR);
+            int last = member.lastIndexOf(SEPARATOR);
+            posts.add(new TimelinePost(member.substring(0, first), member.substring(first + 1, last),
+                    member.substring(last + 1), new Date((long) score)));
+        }
+        return posts;
+    }
+}
@@ -0,0 +1,87 @@
+package com.epita.repository;
+
+import com.epita.repository.entity.HomeTimelines;
+import com.epita.repository.entity.TimelinePost;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Storage of the home timelines. The backend is chosen with {@code timeline.home.store}:
+ * "mongo" ({@link HomeTimelineRepository}, the default) or "redis" ({@link RedisTimelineStore}).
+ * Every implementation keeps timelines sorted by date then postId, most recent first.
+ */
+public interface TimelineStore {
+
+    /**
+     * @param username the owner of the timeline
+     * @return the whole timeline, or null if it does not exist
+     */
+    HomeTimelines findTimeline(String username);
+
+    /**
+     * Fetches one page of a timeline.
+     *
+     * @param username     the owner of the timeline
+     * @param beforeDate   only entries older than this date are returned, or null for the first page
+     * @param beforePostId the postId of the last entry of the previous page, to break date ties
+     * @param limit        the maximum number of entries returned
+     * @return the timeline holding at most {@code limit} entries, or null if it does not exist
+     */
+    HomeTimelines findPage(String username, Date beforeDate, String beforePostId, int limit);
+
+    /**
+     * Adds entries to a timeline in a single write, creating it when needed and keeping at most
+     * {@code maxEntries} entries.
+     *
+     * @param username   the owner of the timeline
+     * @param posts      the entries to add
+     * @param maxEntries the maximum number of entries kept in the timeline
+     */
+    void pushPosts(String username, List<TimelinePost> posts, int maxEntries);
+
+    /**
+     * Appends the same entries to many timelines, creating them when needed and keeping at most
+     * {@code maxEntries} entries in each.
+     *
+     * @param usernames  the owners of the timelines
+     * @param posts      the entries to add
+     * @param maxEntries the maximum number of entries kept in each timeline
+     * @param batchSize  the maximum number of timelines written in one round trip
+     */
+    void pushPostsToAll(Collection<String> usernames, List<TimelinePost> posts, int maxEntries, int batchSize);
+
+    /**
+     * Appends entries to many timelines, each timeline receiving its own entries. Timelines are
+     * written the same way as in {@link #pushPostsToAll(Collection, List, int, int)}.
+     *
+     * @param postsByUsername the entries to add, by owner of the timeline
+     * @param maxEntries      the maximum number of entries kept in each timeline
+     * @param batchSize       the maximum number of timelines written in one round trip
+     */
+    void pushPostsEach(Map<String, List<TimelinePost>> postsByUsername, int maxEntries, int batchSize);
+
+    /**
+     * Removes an entry from every timeline holding it.
+     *
+     * @param postId     the ID of the post
+     * @param authorId   the author (or liker) of the entry
+     * @param type       the entry type ("POSTED" or "LIKED")
+     * @param candidates the timelines that may hold the entry, only fetched by stores that cannot find them
+     * @return the number of timelines that were modified
+     */
+    long pullPost(String postId, String authorId, String type, Supplier<Collection<String>> candidates);
+
+    /**
+     * Removes every entry of an author (or liker) from a timeline in a single atomic write, so that
+     * entries pushed concurrently to the same timeline are kept.
+     *
+     * @param username the owner of the timeline
+     * @param authorId the author (or liker) whose entries are removed
+     * @return true if the timeline was modified
+     */
+    boolean pullAuthor(String username, String authorId);
+}
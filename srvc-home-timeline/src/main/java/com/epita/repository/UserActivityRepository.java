@@ -1,22 +1,327 @@
 package com.epita.repository;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import com.epita.repository.entity.UserActivity;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoServerException;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.result.UpdateResult;
 import io.quarkus.mongodb.panache.PanacheMongoRepositoryBase;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.bson.Document;
+import org.bson.conversions.Bson;
 
 @ApplicationScoped
 public class UserActivityRepository implements PanacheMongoRepositoryBase<UserActivity, String>{
+    public static final String FOLLOWED_INDEX = "followed_idx";
+    public static final String PUSH = "PUSH";
+    public static final String PULL = "PULL";
+
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+    // Only the fields the fan-out policy needs come back from a targeted update
+    private static final Bson FAN_OUT_FIELDS = Projections.include("_id", "followersCount", "fanOutMode");
+
     public UserActivity findActivity(String username) {
         return findById(username);
     }
 
+    /**
+     * Lists the users following the given user, using the multikey index on {@code followed}.
+     * Only the document ids are fetched.
+     *
+     * @param username the followed user
+     * @return the usernames of the followers
+     */
     public List<String> getFollowers(String username) {
-        return listAll()
-                .stream()
-                .filter(activity -> activity.getFollowed() != null && activity.getFollowed().contains(username))
+        return mongoCollection()
+                .find(Filters.eq("followed", username))
+                .projection(Projections.include("_id"))
                 .map(UserActivity::getUsername)
-                .toList();
+                .into(new ArrayList<>());
+    }
+
+    /**
+     * Lists the users followed by the given user. Only the {@code followed} field is fetched.
+     *
+     * @param username the follower
+     * @return the usernames of the followed users, empty if the user has no activity
+     */
+    public List<String> getFollowed(String username) {
+        UserActivity activity = mongoCollection()
+                .find(Filters.eq("_id", username))
+                .projection(Projections.include("followed"))
+                .first();
+        if (activity == null || activity.getFollowed() == null) {
+            return List.of();
+        }
+        return activity.getFollowed();
+    }
+
+    /**
+     * Adds a followed user to the activity of a user, creating the activity if needed.
+     *
+     * @param username the user who follows
+     * @param followed the user being followed
+     * @return the follower count of the followed user after the follow, or -1 if the follow relationship
+     *         already existed
+     */
+    public long addFollowed(String username, String followed) {
+        UpdateResult result = mongoCollection().updateOne(
+                Filters.eq("_id", username),
+                Updates.combine(
+                        Updates.addToSet("followed", followed),
+                        Updates.setOnInsert("posts", new ArrayList<>()),
+                        Updates.setOnInsert("followersCount", 0L)
+                ),
+                UPSERT
+        );
+        boolean added = result.getModifiedCount() > 0 || result.getUpsertedId() != null;
+        return added ? incrementFollowersCount(followed, 1) : -1;
+    }
+
+    /**
+     * Removes a followed user from the activity of a user.
+     *
+     * @param username   the user who unfollows
+     * @param unfollowed the user being unfollowed
+     * @return the follower count of the unfollowed user after the unfollow, or -1 if there was no follow
+     *         relationship
+     */
+    public long removeFollowed(String username, String unfollowed) {
+        UpdateResult result = mongoCollection().updateOne(Filters.eq("_id", username), Updates.pull("followed", unfollowed));
+        return result.getModifiedCount() > 0 ? incrementFollowersCount(unfollowed, -1) : -1;
+    }
+
+    private long incrementFollowersCount(String username, long delta) {
+        UserActivity activity = mongoCollection().findOneAndUpdate(
+                Filters.eq("_id", username),
+                Updates.combine(
+                        Updates.inc("followersCount", delta),
+                        Updates.setOnInsert("followed", new ArrayList<>()),
+                        Updates.setOnInsert("posts", new ArrayList<>())
+                ),
+                new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER).projection(FAN_OUT_FIELDS)
+        );
+        return activity == null || activity.getFollowersCount() == null ? 0 : activity.getFollowersCount();
+    }
+
+    /**
+     * Sets the fan-out mode override of an author.
+     *
+     * @param username the author
+     * @param mode     "PUSH", "PULL", or null to fall back to the follower threshold
+     */
+    public void setFanOutMode(String username, String mode) {
+        mongoCollection().updateOne(
+                Filters.eq("_id", username),
+                Updates.combine(
+                        mode == null ? Updates.unset("fanOutMode") : Updates.set("fanOutMode", mode),
+                        Updates.setOnInsert("followed", new ArrayList<>()),
+                        Updates.setOnInsert("posts", new ArrayList<>())
+                ),
+                UPSERT
+        );
+    }
+
+    /**
+     * Fetches the activity of a user with only its last {@code count} entries.
+     *
+     * @param username the owner of the activity
+     * @param count    the number of recent entries to fetch
+     * @return the activity, or null if it does not exist
+     */
+    public UserActivity findRecentPosts(String username, int count) {
+        return mongoCollection()
+                .find(Filters.eq("_id", username))
+                .projection(Projections.fields(
+                        Projections.include("_id", "followersCount", "fanOutMode"),
+                        Projections.slice("posts", -count)
+                ))
+                .first();
+    }
+
+    /**
+     * Fetches, among the given authors, the ones whose posts are pulled at read time: authors forced to
+     * "PULL", and authors with at least {@code threshold} followers that are not forced to "PUSH".
+     * Only the last {@code recentPosts} entries of each activity are returned.
+     *
+     * @param authors     the candidate authors
+     * @param threshold   the follower count above which authors are not fanned out
+     * @param recentPosts the number of recent entries to fetch per author
+     * @return the activities of the pulled authors
+     */
+    public List<UserActivity> findPulledAuthors(List<String> authors, long threshold, int recentPosts) {
+        if (authors == null || authors.isEmpty()) {
+            return List.of();
+        }
+        return mongoCollection()
+                .find(pulledAuthors(authors, threshold))
+                .projection(Projections.fields(
+                        Projections.include("_id", "followersCount", "fanOutMode"),
+                        Projections.slice("posts", -recentPosts)
+                ))
+                .into(new ArrayList<>());
+    }
+
+    /**
+     * Lists, among the given authors, the ones whose posts are pulled at read time, with the same rules as
+     * {@link #findPulledAuthors}. Only the document ids are fetched.
+     *
+     * @param authors   the candidate authors
+     * @param threshold the follower count above which authors are not fanned out
+     * @return the usernames of the pulled authors
+     */
+    public List<String> findPulledAuthorNames(List<String> authors, long threshold) {
+        if (authors == null || authors.isEmpty()) {
+            return List.of();
+        }
+        return mongoCollection()
+                .find(pulledAuthors(authors, threshold))
+                .projection(Projections.include("_id"))
+                .map(UserActivity::getUsername)
+                .into(new ArrayList<>());
+    }
+
+    private static Bson pulledAuthors(List<String> authors, long threshold) {
+        return Filters.and(
+                Filters.in("_id", authors),
+                Filters.or(
+                        Filters.eq("fanOutMode", PULL),
+                        Filters.and(Filters.ne("fanOutMode", PUSH), Filters.gte("followersCount", threshold))
+                )
+        );
+    }
+
+    /**
+     * Recomputes {@code followersCount} from the {@code followed} lists when some documents predate the
+     * counter. Does nothing once every document carries it.
+     */
+    public void migrateFollowersCount() {
+        if (mongoCollection().countDocuments(Filters.exists("followersCount", false)) == 0) {
+            return;
+        }
+        List<UpdateOneModel<UserActivity>> updates = new ArrayList<>();
+        mongoCollection().aggregate(List.of(
+                Aggregates.unwind("$followed"),
+                Aggregates.group("$followed", Accumulators.sum("count", 1L))
+        ), Document.class).forEach(count -> updates.add(new UpdateOneModel<>(
+                Filters.eq("_id", count.getString("_id")),
+                Updates.combine(
+                        Updates.set("followersCount", count.get("count", Number.class).longValue()),
+                        Updates.setOnInsert("followed", new ArrayList<>()),
+                        Updates.setOnInsert("posts", new ArrayList<>())
+                ),
+                UPSERT
+        )));
+        if (!updates.isEmpty()) {
+            mongoCollection().bulkWrite(updates, new BulkWriteOptions().ordered(false));
+        }
+        mongoCollection().updateMany(Filters.exists("followersCount", false), Updates.set("followersCount", 0L));
+    }
+
+    /**
+     * Appends an entry to the activity of a user with a single {@code $push}, creating the activity if
+     * needed. The rest of the document is left untouched, so concurrent follower counts and fan-out
+     * overrides are never overwritten.
+     *
+     * @param username the owner of the activity
+     * @param post     the entry to append
+     * @return the activity after the write, holding only its follower count and fan-out override
+     */
+    public UserActivity pushPost(String username, UserActivity.Posts post) {
+        return mongoCollection().findOneAndUpdate(
+                Filters.eq("_id", username),
+                Updates.combine(
+                        Updates.push("posts", post),
+                        Updates.setOnInsert("followed", new ArrayList<>()),
+                        Updates.setOnInsert("followersCount", 0L)
+                ),
+                new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER).projection(FAN_OUT_FIELDS)
+        );
+    }
+
+    /**
+     * Appends an entry to the activity of a user unless an entry of the same type already exists for the
+     * post. The check and the {@code $push} are a single atomic update.
+     *
+     * @param username the owner of the activity
+     * @param post     the entry to append
+     * @return the activity after the write, holding only its follower count and fan-out override,
+     *         or null if the entry already existed
+     */
+    public UserActivity pushPostIfAbsent(String username, UserActivity.Posts post) {
+        try {
+            return mongoCollection().findOneAndUpdate(
+                    Filters.and(Filters.eq("_id", username), Filters.not(matchingPost(post.getPostId(), post.getType()))),
+                    Updates.combine(
+                            Updates.push("posts", post),
+                            Updates.setOnInsert("followed", new ArrayList<>()),
+                            Updates.setOnInsert("followersCount", 0L)
+                    ),
+                    new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER).projection(FAN_OUT_FIELDS)
+            );
+        } catch (MongoServerException e) {
+            // The activity exists but the filter did not match it: the upsert collides on _id
+            if (ErrorCategory.fromErrorCode(e.getCode()) == ErrorCategory.DUPLICATE_KEY) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Removes an entry from the activity of a user with a single {@code $pull}, if it exists.
+     *
+     * @param username the owner of the activity
+     * @param postId   the ID of the post
+     * @param type     the entry type ("POSTED" or "LIKED")
+     * @return the activity after the write, holding only its follower count and fan-out override,
+     *         or null if there was no such entry
+     */
+    public UserActivity pullExistingPost(String username, String postId, String type) {
+        return mongoCollection().findOneAndUpdate(
+                Filters.and(Filters.eq("_id", username), matchingPost(postId, type)),
+                Updates.pull("posts", Filters.and(Filters.eq("postId", postId), Filters.eq("type", type))),
+                new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER).projection(FAN_OUT_FIELDS)
+        );
+    }
+
+    private static Bson matchingPost(String postId, String type) {
+        return Filters.elemMatch("posts", Filters.and(Filters.eq("postId", postId), Filters.eq("type", type)));
+    }
+
+    /**
+     * Removes an entry from the activity of a user.
+     *
+     * @param username the owner of the activity
+     * @param postId   the ID of the post
+     * @param type     the entry type ("POSTED" or "LIKED")
+     */
+    public void pullPost(String username, String postId, String type) {
+        mongoCollection().updateOne(
+                Filters.eq("_id", username),
+                Updates.pull("posts", Filters.and(Filters.eq("postId", postId), Filters.eq("type", type)))
+        );
+    }
+
+    /**
+     * Creates the reverse-follower index on {@code followed}. Mongo builds it from the existing
+     * documents and keeps it in sync on every write afterwards; the call is a no-op once the index exists.
+     */
+    public void ensureFollowerIndex() {
+        mongoCollection().createIndex(Indexes.ascending("followed"), new IndexOptions().name(FOLLOWED_INDEX));
     }
-}
\ No newline at end of file
+}
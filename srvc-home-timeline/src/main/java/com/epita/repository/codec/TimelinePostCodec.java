@@ -0,0 +1,116 @@
+package com.epita.repository.codec;
+
+import com.epita.repository.entity.TimelinePost;
+import org.bson.BsonBinary;
+import org.bson.BsonBinarySubType;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Compact BSON layout of a {@link TimelinePost}:
+ * {@code {p: <UUID binary, or string>, a: <author>, t: <int type>, d: <date>}}.
+ * The legacy layout {@code {postId, authorId, type, date}} is still read, so documents written before
+ * the migration stay readable.
+ */
+public class TimelinePostCodec implements Codec<TimelinePost> {
+    public static final String POST_ID = "p";
+    public static final String AUTHOR_ID = "a";
+    public static final String TYPE = "t";
+    public static final String DATE = "d";
+
+    @Override
+    public void encode(BsonWriter writer, TimelinePost post, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        if (post.uuidPostId()) {
+            writer.writeBinaryData(POST_ID, uuidBinary(post.idHigh(), post.idLow()));
+        } else {
+            writer.writeString(POST_ID, post.rawPostId());
+        }
+        writer.writeString(AUTHOR_ID, post.getAuthorId());
+        writer.writeInt32(TYPE, post.typeCode());
+        writer.writeDateTime(DATE, post.dateMillis());
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public TimelinePost decode(BsonReader reader, DecoderContext decoderContext) {
+        long high = 0;
+        long low = 0;
+        String rawPostId = null;
+        String authorId = null;
+        byte type = TimelinePost.POSTED;
+        long date = 0;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            if (reader.getCurrentBsonType() == BsonType.NULL) {
+                reader.readNull();
+                continue;
+            }
+            switch (name) {
+                case POST_ID -> {
+                    if (reader.getCurrentBsonType() == BsonType.BINARY) {
+                        ByteBuffer bytes = ByteBuffer.wrap(reader.readBinaryData().getData());
+                        high = bytes.getLong();
+                        low = bytes.getLong();
+                    } else {
+                        rawPostId = reader.readString();
+                    }
+                }
+                case "postId" -> {
+                    String postId = reader.readString();
+                    UUID uuid = TimelinePost.parseUuid(postId);
+                    if (uuid != null) {
+                        high = uuid.getMostSignificantBits();
+                        low = uuid.getLeastSignificantBits();
+                    } else {
+                        rawPostId = postId;
+                    }
+                }
+                case AUTHOR_ID, "authorId" -> authorId = reader.readString();
+                case TYPE -> type = (byte) reader.readInt32();
+                case "type" -> type = TimelinePost.typeCode(reader.readString());
+                case DATE, "date" -> date = reader.readDateTime();
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return new TimelinePost(high, low, rawPostId, authorId, type, date);
+    }
+
+    @Override
+    public Class<TimelinePost> getEncoderClass() {
+        return TimelinePost.class;
+    }
+
+    /**
+     * @return the BSON value stored in {@code p} for a postId, to be used in queries
+     */
+    public static Object postIdValue(String postId) {
+        UUID uuid = TimelinePost.parseUuid(postId);
+        return uuid == null ? postId : uuidBinary(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    /**
+     * @return the compact sub-document identifying an entry, to be used in queries
+     */
+    public static Document entry(String postId, String authorId, String type) {
+        return new Document(POST_ID, postIdValue(postId))
+                .append(AUTHOR_ID, authorId)
+                .append(TYPE, (int) TimelinePost.typeCode(type));
+    }
+
+    private static BsonBinary uuidBinary(long high, long low) {
+        return new BsonBinary(BsonBinarySubType.UUID_STANDARD,
+                ByteBuffer.allocate(16).putLong(high).putLong(low).array());
+    }
+}
@@ -0,0 +1,20 @@
+package com.epita.repository.codec;
+
+import com.epita.repository.entity.TimelinePost;
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistry;
+
+/**
+ * Registers {@link TimelinePostCodec}. Quarkus picks up {@link CodecProvider} implementations
+ * automatically and consults them before the POJO codecs.
+ */
+public class TimelinePostCodecProvider implements CodecProvider {
+    private static final TimelinePostCodec CODEC = new TimelinePostCodec();
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Codec<T> get(Class<T> clazz, CodecRegistry registry) {
+        return clazz == TimelinePost.class ? (Codec<T>) CODEC : null;
+    }
+}
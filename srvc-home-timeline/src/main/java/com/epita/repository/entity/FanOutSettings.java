@@ -0,0 +1,22 @@
+package com.epita.repository.entity;
+
+import org.bson.codecs.pojo.annotations.BsonId;
+
+import io.quarkus.mongodb.panache.common.MongoEntity;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@MongoEntity(collection = "FanOutSettings", database = "home_timelines_db")
+public class FanOutSettings {
+    @BsonId
+
+    private String id; // "global", shared by every instance
+    private Long threshold; // follower count from which authors are pulled, null to use the configured one
+    private Long version; // incremented whenever the set of pulled authors may have changed
+}
@@ -1,19 +1,166 @@
 package com.epita.repository.entity;
 
-import lombok.AllArgsConstructor;
-import lombok.Getter;
-import lombok.NoArgsConstructor;
-import lombok.Setter;
-
 import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Entry of a home timeline, replicated into the timeline of every follower.
+ * Entries are kept compact: a UUID postId is held as two longs (other ids are kept as strings), the
+ * type as a byte, the date as epoch millis and the author as an interned string. The getters expand
+ * the values on demand, so the REST layer still sees postId / authorId / type / date.
+ */
+public class TimelinePost implements Comparable<TimelinePost> {
+    public static final byte POSTED = 0;
+    public static final byte LIKED = 1;
+
+    private long idHigh;
+    private long idLow;
+    private String rawPostId; // set when the postId is not a UUID
+    private String authorId; // ID de l'auteur ou du liker
+    private byte type;       // POSTED ou LIKED
+    private long date;
+
+    public TimelinePost() {
+    }
+
+    public TimelinePost(String postId, String authorId, String type, Date date) {
+        setPostId(postId);
+        setAuthorId(authorId);
+        setType(type);
+        setDate(date);
+    }
+
+    public TimelinePost(long idHigh, long idLow, String rawPostId, String authorId, byte type, long date) {
+        this.idHigh = idHigh;
+        this.idLow = idLow;
+        this.rawPostId = rawPostId;
+        setAuthorId(authorId);
+        this.type = type;
+        this.date = date;
+    }
+
+    public String getPostId() {
+        return rawPostId != null ? rawPostId : new UUID(idHigh, idLow).toString();
+    }
+
+    public void setPostId(String postId) {
+        UUID uuid = parseUuid(postId);
+        if (uuid != null) {
+            this.idHigh = uuid.getMostSignificantBits();
+            this.idLow = uuid.getLeastSignificantBits();
+            this.rawPostId = null;
+        } else {
+            this.rawPostId = postId;
+        }
+    }
+
+    public String getAuthorId() {
+        return authorId;
+    }
+
+    public void setAuthorId(String authorId) {
+        this.authorId = authorId == null ? null : authorId.intern();
+    }
+
+    public String getType() {
+        return typeName(type);
+    }
+
+    public void setType(String type) {
+        this.type = typeCode(type);
+    }
+
+    public Date getDate() {
+        return new Date(date);
+    }
+
+    public void setDate(Date date) {
+        this.date = date.getTime();
+    }
+
+    // Compact accessors, not exposed as bean properties
+
+    public boolean uuidPostId() {
+        return rawPostId == null;
+    }
+
+    public long idHigh() {
+        return idHigh;
+    }
+
+    public long idLow() {
+        return idLow;
+    }
+
+    public String rawPostId() {
+        return rawPostId;
+    }
+
+    public byte typeCode() {
+        return type;
+    }
+
+    public long dateMillis() {
+        return date;
+    }
+
+    /**
+     * @return true if both entries are the same post, author and type, whatever their date
+     */
+    public boolean sameEntry(TimelinePost other) {
+        return type == other.type
+                && samePostId(other)
+                && authorId.equals(other.authorId);
+    }
+
+    public boolean samePostId(TimelinePost other) {
+        return rawPostId == null
+                ? other.rawPostId == null && idHigh == other.idHigh && idLow == other.idLow
+                : rawPostId.equals(other.rawPostId);
+    }
+
+    /**
+     * Orders entries by date, then by postId. UUIDs compare as their canonical string form would.
+     */
+    @Override
+    public int compareTo(TimelinePost other) {
+        int byDate = Long.compare(date, other.date);
+        if (byDate != 0) {
+            return byDate;
+        }
+        if (rawPostId == null && other.rawPostId == null) {
+            int byHigh = Long.compareUnsigned(idHigh, other.idHigh);
+            return byHigh != 0 ? byHigh : Long.compareUnsigned(idLow, other.idLow);
+        }
+        return getPostId().compareTo(other.getPostId());
+    }
+
+    public static byte typeCode(String type) {
+        if ("POSTED".equals(type)) {
+            return POSTED;
+        }
+        if ("LIKED".equals(type)) {
+            return LIKED;
+        }
+        throw new IllegalArgumentException("Unknown timeline entry type: " + type);
+    }
+
+    public static String typeName(byte type) {
+        return type == LIKED ? "LIKED" : "POSTED";
+    }
 
-@AllArgsConstructor
-@NoArgsConstructor
-@Getter
-@Setter
-public class TimelinePost {
-    public String postId;
-    public String authorId; // ID de l'auteur ou du liker
-    public String type;    // "POSTED" ou "LIKED"
-    public Date date;
+    /**
+     * @return the UUID, or null if the value is not a canonical UUID (which must round-trip unchanged)
+     */
+    public static UUID parseUuid(String value) {
+        if (value == null || value.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(value);
+            return uuid.toString().equals(value) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
 }
@@ -21,6 +21,12 @@ public class UserActivity {
     private String username;
     private List<String> followed;
     private List<Posts> posts;
+    private Long followersCount; // maintained by addFollow/removeFollow
+    private String fanOutMode; // "PUSH", "PULL" or null to follow the threshold
+
+    public UserActivity(String username, List<String> followed, List<Posts> posts) {
+        this(username, followed, posts, 0L, null);
+    }
 
     @Getter
     @Setter
@@ -0,0 +1,159 @@
+package com.epita.service;
+
+import com.epita.dto.responses.FanOutModeResponse;
+import com.epita.repository.FanOutSettingsRepository;
+import com.epita.repository.UserActivityRepository;
+import com.epita.repository.entity.FanOutSettings;
+import com.epita.repository.entity.UserActivity;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+
+import static com.epita.repository.UserActivityRepository.PULL;
+import static com.epita.repository.UserActivityRepository.PUSH;
+
+/**
+ * Decides whether the posts of an author are fanned out to their followers on write (push) or merged
+ * into the followers' timelines at read time (pull).
+ * Authors with at least {@code threshold} followers are pulled, unless their activity carries a
+ * {@code fanOutMode} override. The threshold can be changed at runtime: it is stored in Mongo so that
+ * every instance applies the same one, and each instance re-reads it every {@code threshold-refresh}.
+ * It is exported as a gauge.
+ * The stored settings also carry a version, bumped by every change that may move an author between push
+ * and pull, so that instances know when the pulled authors they cached are stale.
+ */
+@ApplicationScoped
+public class FanOutPolicy {
+
+    @Inject
+    UserActivityRepository userActivityRepository;
+
+    @Inject
+    FanOutSettingsRepository fanOutSettingsRepository;
+
+    private final long defaultThreshold;
+    private final long refreshNanos;
+    private volatile long threshold;
+    private volatile long version;
+    private volatile long refreshedAt;
+    private volatile boolean loaded;
+
+    public FanOutPolicy(@ConfigProperty(name = "timeline.home.fanout.threshold", defaultValue = "10000") long threshold,
+                        @ConfigProperty(name = "timeline.home.fanout.threshold-refresh", defaultValue = "5S") Duration refresh,
+                        MeterRegistry registry) {
+        this.defaultThreshold = threshold;
+        this.threshold = threshold;
+        this.refreshNanos = refresh.toNanos();
+        Gauge.builder("home_timeline.fanout.threshold", this, policy -> policy.threshold)
+                .description("Follower count from which the posts of an author are pulled at read time")
+                .register(registry);
+    }
+
+    /**
+     * @return the threshold shared by every instance, as last read from Mongo, or the configured one if
+     *         it was never changed at runtime
+     */
+    public long getThreshold() {
+        refreshIfStale();
+        return threshold;
+    }
+
+    /**
+     * @return the version of the settings shared by every instance, as last read from Mongo
+     */
+    public long getVersion() {
+        refreshIfStale();
+        return version;
+    }
+
+    private void refreshIfStale() {
+        long now = System.nanoTime();
+        if (loaded && now - refreshedAt < refreshNanos) {
+            return;
+        }
+        refresh();
+    }
+
+    private void refresh() {
+        FanOutSettings settings = fanOutSettingsRepository.findSettings();
+        threshold = settings == null || settings.getThreshold() == null ? defaultThreshold : settings.getThreshold();
+        version = settings == null || settings.getVersion() == null ? 0 : settings.getVersion();
+        refreshedAt = System.nanoTime();
+        loaded = true;
+    }
+
+    /**
+     * Changes the threshold of every instance. The others pick it up on their next refresh.
+     *
+     * @param threshold the follower count from which authors are pulled
+     */
+    public void setThreshold(long threshold) {
+        fanOutSettingsRepository.saveThreshold(threshold);
+        refresh();
+    }
+
+    /**
+     * Called after a follow or an unfollow changed the follower count of an author. Crossing the threshold
+     * moves the author between push and pull for all of their followers.
+     *
+     * @param followersBefore the follower count before the change
+     * @param followersAfter  the follower count after the change
+     */
+    public void onFollowersCountChanged(long followersBefore, long followersAfter) {
+        long current = getThreshold();
+        if ((followersBefore >= current) != (followersAfter >= current)) {
+            fanOutSettingsRepository.bumpVersion();
+            refresh();
+        }
+    }
+
+    /**
+     * @param activity the activity of the author
+     * @return true if the author's posts are merged at read time instead of being fanned out
+     */
+    public boolean isPulled(UserActivity activity) {
+        return PULL.equals(modeOf(activity));
+    }
+
+    /**
+     * @param activity the activity of the author, possibly null
+     * @return the effective fan-out mode of the author, "PUSH" or "PULL"
+     */
+    public String modeOf(UserActivity activity) {
+        if (activity == null) {
+            return PUSH;
+        }
+        if (activity.getFanOutMode() != null) {
+            return activity.getFanOutMode();
+        }
+        Long followers = activity.getFollowersCount();
+        return followers != null && followers >= getThreshold() ? PULL : PUSH;
+    }
+
+    /**
+     * @param username the author
+     * @return the follower count, override and effective fan-out mode of the author
+     */
+    public FanOutModeResponse describe(String username) {
+        UserActivity activity = userActivityRepository.findActivity(username);
+        long followers = activity == null || activity.getFollowersCount() == null ? 0 : activity.getFollowersCount();
+        String override = activity == null ? null : activity.getFanOutMode();
+        return new FanOutModeResponse(username, followers, override, modeOf(activity));
+    }
+
+    /**
+     * Forces the fan-out mode of an author. Only posts written after the change are affected.
+     *
+     * @param username the author
+     * @param mode     "PUSH", "PULL", or null to fall back to the threshold
+     */
+    public void setMode(String username, String mode) {
+        userActivityRepository.setFanOutMode(username, mode);
+        fanOutSettingsRepository.bumpVersion();
+        refresh();
+    }
+}
@@ -1,13 +1,19 @@
 package com.epita.service;
 
+import com.epita.dto.responses.HomeTimelinePageResponse;
 import com.epita.repository.entity.HomeTimelines;
 import com.epita.repository.entity.TimelinePost;
 import com.epita.repository.entity.UserActivity;
 import com.epita.repository.entity.UserActivity.Posts;
 import com.epita.repository.UserActivityRepository;
-import com.epita.repository.HomeTimelineRepository;
+import com.epita.repository.TimelineStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Instance;
 import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 
 import java.util.*;
@@ -16,31 +22,144 @@ import java.util.*;
 public class HomeTimelineService {
 
     @Inject
-    HomeTimelineRepository homeTimelineRepository;
+    UserActivityRepository userActivityRepository;
+
+    @ConfigProperty(name = "timeline.home.max-entries", defaultValue = "800")
+    int maxEntries;
+
+    @ConfigProperty(name = "timeline.home.pull.recent-posts", defaultValue = "100")
+    int pullRecentPosts;
+
+    @ConfigProperty(name = "timeline.home.page.default-limit", defaultValue = "50")
+    int defaultPageLimit;
+
+    @ConfigProperty(name = "timeline.home.backfill.recent-posts", defaultValue = "100")
+    int backfillRecentPosts;
 
     @Inject
-    UserActivityRepository userActivityRepository;
+    FanOutPolicy fanOutPolicy;
+
+    @Inject
+    TimelineCache timelineCache;
+
+    @Inject
+    TimelineWriteBuffer writeBuffer;
+
+    private final TimelineStore timelineStore;
+    private final DistributionSummary removedPostTimelines;
+    private final Counter skippedFanOuts;
+
+    public HomeTimelineService(Instance<TimelineStore> timelineStores, MeterRegistry registry) {
+        // Mongo or Redis, depending on timeline.home.store
+        this.timelineStore = timelineStores.get();
+        this.removedPostTimelines = DistributionSummary.builder("home_timeline.post_removal.timelines")
+                .description("Number of home timelines modified by a post deletion")
+                .register(registry);
+        this.skippedFanOuts = Counter.builder("home_timeline.fanout.skipped")
+                .description("Number of writes not fanned out because the author is pulled at read time")
+                .register(registry);
+    }
 
     /**
-     * Fetches the home timeline for a given user. If the timeline does not exist, it creates a new one.
+     * Fetches the home timeline for a given user. If the timeline does not exist yet, an empty one is
+     * returned without being stored: every write path upserts the timeline when it first needs it.
      * 
      * @param username       the username of the user whose timeline is to be fetched
      */
     public HomeTimelines getTimeline(String username) {
-        // Check if the timeline already exists
-        HomeTimelines timeline = homeTimelineRepository.findTimeline(username);
-        if (timeline != null && timeline.getPosts() != null) {
-            return timeline;
+        HomeTimelines timeline = timelineStore.findTimeline(username);
+        if (timeline == null) {
+            timeline = new HomeTimelines();
+            timeline.setUsername(username);
+        }
+        if (timeline.getPosts() == null) {
+            timeline.setPosts(new ArrayList<>());
         }
-        // If not, create a new timeline
-        timeline = new HomeTimelines();
-        timeline.setUsername(username);
-        timeline.setPosts(new ArrayList<>());
-        timeline.setLastUpdated(new Date());
-        homeTimelineRepository.persist(timeline);
         return timeline;
     }
 
+    /**
+     * Builds one page of the home timeline served to a user: the stored (pushed) timeline merged with
+     * the recent posts of the followed authors that are not fanned out on write.
+     *
+     * @param username       the username of the user whose timeline is to be fetched
+     * @param limit          the maximum number of entries in the page (capped to the timeline size), or null for the default
+     * @param before         the cursor returned with the previous page, or null for the first page
+     */
+    public HomeTimelinePageResponse getHomeTimeline(String username, Integer limit, TimelineCursor before) {
+        int pageLimit = limit == null ? defaultPageLimit : Math.min(limit, maxEntries);
+
+        // One extra entry tells whether there is a next page
+        TimelineCache.Head head = timelineCache.get(username, fanOutPolicy.getVersion(), this::loadHead);
+        Date lastUpdated = head.getLastUpdated();
+        List<TimelinePost> stored = pageFromHead(head, before, pageLimit + 1);
+        if (stored == null) {
+            HomeTimelines timeline = before == null
+                    ? timelineStore.findPage(username, null, null, pageLimit + 1)
+                    : timelineStore.findPage(username, before.getDate(), before.getPostId(), pageLimit + 1);
+            stored = timeline == null || timeline.getPosts() == null ? List.of() : timeline.getPosts();
+        }
+
+        // The head knows which followed authors are pulled, there is nothing to read when none is
+        List<UserActivity> pulledAuthors = head.getPulledAuthors().isEmpty() ? List.of()
+                : userActivityRepository.findPulledAuthors(head.getPulledAuthors(), fanOutPolicy.getThreshold(), pullRecentPosts);
+        List<List<TimelinePost>> sources = new ArrayList<>(pulledAuthors.size() + 1);
+        sources.add(stored);
+        for (UserActivity author : pulledAuthors) {
+            if (author.getPosts() == null) {
+                continue;
+            }
+            List<TimelinePost> authorPosts = new ArrayList<>(author.getPosts().size());
+            for (Posts post : author.getPosts()) {
+                TimelinePost timelinePost = new TimelinePost(post.getPostId(), author.getUsername(), post.getType(), post.getDate());
+                if (before == null || before.isBefore(timelinePost)) {
+                    authorPosts.add(timelinePost);
+                }
+            }
+            authorPosts.sort(TimelineMerger.MOST_RECENT_FIRST);
+            sources.add(authorPosts);
+        }
+
+        List<TimelinePost> posts = sources.size() == 1 ? stored : TimelineMerger.merge(sources, pageLimit + 1);
+        String nextCursor = null;
+        if (posts.size() > pageLimit) {
+            posts = new ArrayList<>(posts.subList(0, pageLimit));
+            nextCursor = TimelineCursor.of(posts.get(pageLimit - 1)).toString();
+        }
+        return new HomeTimelinePageResponse(username, posts, lastUpdated, nextCursor);
+    }
+
+    private TimelineCache.Head loadHead(String username) {
+        // Read the version first: a change made during the load makes the head stale rather than lost
+        long policyVersion = fanOutPolicy.getVersion();
+        List<String> pulledAuthors = userActivityRepository.findPulledAuthorNames(
+                userActivityRepository.getFollowed(username), fanOutPolicy.getThreshold());
+        int headSize = timelineCache.getHeadSize();
+        HomeTimelines timeline = timelineStore.findPage(username, null, null, headSize);
+        if (timeline == null || timeline.getPosts() == null) {
+            return new TimelineCache.Head(List.of(), null, true, pulledAuthors, policyVersion);
+        }
+        return new TimelineCache.Head(timeline.getPosts(), timeline.getLastUpdated(), timeline.getPosts().size() < headSize,
+                pulledAuthors, policyVersion);
+    }
+
+    /**
+     * @return the {@code size} entries following the cursor in the cached head, or null if the head
+     *         does not hold enough of them
+     */
+    private List<TimelinePost> pageFromHead(TimelineCache.Head head, TimelineCursor before, int size) {
+        List<TimelinePost> page = new ArrayList<>(Math.min(size, head.getPosts().size()));
+        for (TimelinePost post : head.getPosts()) {
+            if (before == null || before.isBefore(post)) {
+                page.add(post);
+                if (page.size() == size) {
+                    return page;
+                }
+            }
+        }
+        return head.isComplete() ? page : null;
+    }
+
     /**
      * Adds a post to the user's activity and updates the home timelines of their followers.
      * 
@@ -49,34 +168,24 @@ public class HomeTimelineService {
      * @param createdAt  the date when the post was created
      */
     public void addPost(String username, String postId, Date createdAt) {
-        // Update UserActivity
-        UserActivity userActivity = userActivityRepository.findActivity(username);
-        if (userActivity == null) {
-            userActivity = new UserActivity(username,
-                new ArrayList<>(),
-                new ArrayList<>()
-            );
-            userActivityRepository.persist(userActivity);
-        }
         // Add post to UserActivity
         Posts newPost = new Posts();
         newPost.setPostId(postId);
         newPost.setType("POSTED");
         newPost.setDate(createdAt);
-        userActivity.getPosts().add(newPost);
-        userActivityRepository.update(userActivity);
+        UserActivity userActivity = userActivityRepository.pushPost(username, newPost);
+
+        // Followers of pulled authors read the post at read time
+        if (fanOutPolicy.isPulled(userActivity)) {
+            skippedFanOuts.increment();
+            return;
+        }
 
         // Update HomeTimeline of followers
         List<String> followers = userActivityRepository.getFollowers(username);
 
-        for (String follower : followers) {
-            HomeTimelines timeline = getTimeline(follower);
-            TimelinePost timelinePost = new TimelinePost(postId, username, "POSTED", createdAt);
-            timeline.getPosts().add(timelinePost);
-            timeline.getPosts().sort((p1, p2) -> p2.getDate().compareTo(p1.getDate()));
-            timeline.setLastUpdated(new Date());
-            homeTimelineRepository.update(timeline);
-        }
+        List<TimelinePost> timelinePosts = List.of(new TimelinePost(postId, username, "POSTED", createdAt));
+        writeBuffer.add(followers, timelinePosts);
     }
 
     /**
@@ -88,66 +197,44 @@ public class HomeTimelineService {
     public void addLike(String username, String postId) {
         Date likedAt = new Date();
 
-        // Update UserActivity
-        UserActivity userActivity = userActivityRepository.findActivity(username);
-        if (userActivity == null) {
-            userActivity = new UserActivity(username,
-                new ArrayList<>(),
-                new ArrayList<>()
-            );
-            userActivityRepository.persist(userActivity);
-        }
-        // Check if the post is already liked
-        boolean alreadyLiked = userActivity.getPosts().stream()
-                .anyMatch(post -> post.getPostId().equals(postId) && post.getType().equals("LIKED"));
-        if (alreadyLiked) {
-            return;
-        }
-
-        // Add like to UserActivity
+        // Add like to UserActivity, unless the post is already liked
         Posts likedPost = new Posts();
         likedPost.setPostId(postId);
         likedPost.setType("LIKED");
         likedPost.setDate(likedAt);
-        userActivity.getPosts().add(likedPost);
-        userActivityRepository.update(userActivity);
+        UserActivity userActivity = userActivityRepository.pushPostIfAbsent(username, likedPost);
+        if (userActivity == null) {
+            return;
+        }
+
+        // Followers of pulled authors read the like at read time
+        if (fanOutPolicy.isPulled(userActivity)) {
+            skippedFanOuts.increment();
+            return;
+        }
 
         // Update HomeTimeline of followers
         List<String> followers = userActivityRepository.getFollowers(username);
 
-        for (String follower : followers) {
-            HomeTimelines timeline = getTimeline(follower);
-            TimelinePost timelinePost = new TimelinePost(postId, username, "LIKED", likedAt);
-            timeline.getPosts().add(timelinePost);
-            timeline.getPosts().sort((p1, p2) -> p2.getDate().compareTo(p1.getDate()));
-            timeline.setLastUpdated(new Date());
-            homeTimelineRepository.update(timeline);
-        }
+        List<TimelinePost> timelinePosts = List.of(new TimelinePost(postId, username, "LIKED", likedAt));
+        writeBuffer.add(followers, timelinePosts);
     }
 
     /**
-     * Removes a post from the user's activity and updates the home timelines of all users.
+     * Removes a post from the user's activity and from every home timeline containing it.
      * 
      * @param username   the username of the user who created the post
      * @param postId     the ID of the post to be removed
      */
     public void removePost(String username, String postId) {
         // Update UserActivity
-        UserActivity userActivity = userActivityRepository.findActivity(username);
-        if (userActivity != null && userActivity.getPosts() != null) {
-            userActivity.getPosts().removeIf(post -> post.getPostId().equals(postId) && post.getType().equals("POSTED"));
-            userActivityRepository.update(userActivity);
-        }
+        userActivityRepository.pullPost(username, postId, "POSTED");
 
-        // Update HomeTimeline of all users
-        List<HomeTimelines> timelines = homeTimelineRepository.listAll();
-        for (HomeTimelines timeline : timelines) {
-            if (timeline.getPosts().removeIf(post -> post.getPostId().equals(postId) && post.getAuthorId().equals(username) && post.getType().equals("POSTED"))) {
-                timeline.getPosts().sort((p1, p2) -> p2.getDate().compareTo(p1.getDate()));
-                timeline.setLastUpdated(new Date());
-                homeTimelineRepository.update(timeline);
-            }
-        }
+        // Update only the HomeTimelines containing the post, once the buffered writes are done
+        writeBuffer.flush();
+        long affected = timelineStore.pullPost(postId, username, "POSTED", () -> userActivityRepository.getFollowers(username));
+        removedPostTimelines.record(affected);
+        timelineCache.invalidateEntry(postId, username, "POSTED");
     }
 
     /**
@@ -157,37 +244,21 @@ public class HomeTimelineService {
      * @param postId     the ID of the post that was unliked
      */
     public void removeLike(String username, String postId) {
-        UserActivity userActivity = userActivityRepository.findActivity(username);
+        // Remove like from UserActivity, if the post was liked
+        UserActivity userActivity = userActivityRepository.pullExistingPost(username, postId, "LIKED");
         if (userActivity == null) {
-            userActivity = new UserActivity(username,
-                new ArrayList<>(),
-                new ArrayList<>()
-            );
-            userActivityRepository.persist(userActivity);
+            return;
         }
-        //remove like from useractivity
-        boolean alreadyLiked = userActivity.getPosts().stream()
-                .anyMatch(post -> post.getPostId().equals(postId) && post.getType().equals("LIKED"));
 
-        if (!alreadyLiked) {
+        // The like of a pulled author was never fanned out
+        if (fanOutPolicy.isPulled(userActivity)) {
             return;
         }
-        // Check if the post is already liked
-        userActivity.getPosts().removeIf(post -> post.getPostId().equals(postId) && post.getType().equals("LIKED"));
-        userActivityRepository.update(userActivity);
 
-        // Update HomeTimeline of followers
-        List<String> followers = userActivityRepository.getFollowers(username);
-
-        for (String follower : followers) {
-            HomeTimelines timeline = getTimeline(follower);
-            boolean changed = timeline.getPosts().removeIf(p -> p.getPostId().equals(postId) && p.getAuthorId().equals(username) && p.getType().equals("LIKED"));
-            if (changed) {
-                timeline.getPosts().sort((p1, p2) -> p2.getDate().compareTo(p1.getDate()));
-                timeline.setLastUpdated(new Date());
-                homeTimelineRepository.update(timeline);
-            }
-        }
+        // Update only the HomeTimelines containing the like, once the buffered writes are done
+        writeBuffer.flush();
+        timelineStore.pullPost(postId, username, "LIKED", () -> userActivityRepository.getFollowers(username));
+        timelineCache.invalidateEntry(postId, username, "LIKED");
     }
 
     /**
@@ -197,39 +268,36 @@ public class HomeTimelineService {
      * @param followed   the username of the user being followed
      */
     public void addFollow(String username, String followed) {
-        UserActivity userActivity = userActivityRepository.findActivity(username);
-        if (userActivity == null) {
-            userActivity = new UserActivity(username,
-                new ArrayList<>(),
-                new ArrayList<>()
-            );
-            userActivityRepository.persist(userActivity);
-        }
-
-        if (!userActivity.getFollowed().contains(followed)) {
-            userActivity.getFollowed().add(followed);
-            userActivityRepository.update(userActivity);
-
-            // Fetch posts from the followed user
-            UserActivity followedUserActivity = userActivityRepository.findActivity(followed);
-            if (followedUserActivity != null && followedUserActivity.getPosts() != null) {
-                HomeTimelines timeline = getTimeline(username);
-
-                for (UserActivity.Posts post : followedUserActivity.getPosts()) {
-                    TimelinePost timelinePost = new TimelinePost(
-                        post.getPostId(),
-                        followed,
-                        post.getType(),
-                        post.getDate()
-                    );
-                    timeline.getPosts().add(timelinePost);
-                }
+        long followers = userActivityRepository.addFollowed(username, followed);
+        if (followers >= 0) {
+            fanOutPolicy.onFollowersCountChanged(followers - 1, followers);
+            // Fetch only the most recent posts from the followed user
+            UserActivity followedUserActivity = userActivityRepository.findRecentPosts(followed, Math.min(backfillRecentPosts, maxEntries));
+            // Posts of pulled authors are merged at read time, there is nothing to backfill,
+            // but the cached head no longer lists every pulled author the user follows
+            if (followedUserActivity != null && fanOutPolicy.isPulled(followedUserActivity)) {
+                timelineCache.invalidate(username);
+                return;
+            }
+            if (followedUserActivity == null || followedUserActivity.getPosts() == null
+                    || followedUserActivity.getPosts().isEmpty()) {
+                return;
+            }
 
-                // Sort posts by date in descending order
-                timeline.getPosts().sort((p1, p2) -> p2.getDate().compareTo(p1.getDate()));
-                timeline.setLastUpdated(new Date());
-                homeTimelineRepository.update(timeline);
+            List<TimelinePost> backfill = new ArrayList<>(followedUserActivity.getPosts().size());
+            for (UserActivity.Posts post : followedUserActivity.getPosts()) {
+                backfill.add(new TimelinePost(
+                    post.getPostId(),
+                    followed,
+                    post.getType(),
+                    post.getDate()
+                ));
             }
+            backfill.sort(TimelineMerger.MOST_RECENT_FIRST);
+
+            // The store merges the sorted posts into the timeline and keeps it bounded in a single write
+            timelineStore.pushPosts(username, backfill, maxEntries);
+            timelineCache.push(List.of(username), backfill);
         }
     }
 
@@ -241,20 +309,16 @@ public class HomeTimelineService {
      */
     public void removeFollow(String username, String unfollowed) {
         // Update UserActivity
-        UserActivity userActivity = userActivityRepository.findActivity(username);
-        if (userActivity != null && userActivity.getFollowed() != null) {
-            userActivity.getFollowed().remove(unfollowed);
-            userActivityRepository.update(userActivity);
+        long followers = userActivityRepository.removeFollowed(username, unfollowed);
+        if (followers >= 0) {
+            fanOutPolicy.onFollowersCountChanged(followers + 1, followers);
         }
 
-        // Remove posts from the unfollowed user in the timeline
-        HomeTimelines timeline = getTimeline(username);
-        if (timeline != null && timeline.getPosts() != null) {
-            boolean changed = timeline.getPosts().removeIf(post -> post.getAuthorId().equals(unfollowed));
-            if (changed) {
-                timeline.setLastUpdated(new Date());
-                homeTimelineRepository.update(timeline);
-            }
-        }
+        // Remove posts from the unfollowed user in the timeline, once the buffered writes are done.
+        // The store pulls them atomically: fan-out writes to the same timeline run under other ordering keys
+        writeBuffer.flush();
+        timelineStore.pullAuthor(username, unfollowed);
+        // The cached head also lists the followed authors that are pulled
+        timelineCache.invalidate(username);
     }
 }
@@ -0,0 +1,248 @@
+package com.epita.service;
+
+import com.epita.repository.entity.TimelinePost;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * In-process cache of the head (most recent entries) of recently read home timelines.
+ * Eviction is Caffeine's W-TinyLFU, bounded by an estimate of the memory held by the cached entries.
+ * Fan-out writes update cached heads in place; removals drop the heads they may affect, found through
+ * an index of the cached heads by postId.
+ * A head also carries the followed authors that are pulled at read time, so that a hit needs no
+ * database read when none of them is. It is reloaded when the fan-out settings version it was built with
+ * is outdated.
+ * Hit ratio, evictions and size are exported under the {@code home_timeline_heads} cache name.
+ */
+@ApplicationScoped
+public class TimelineCache {
+
+    // Rough heap footprint of a cached head and of one of its compact entries (object header,
+    // two longs for the id, the date, the type and the reference to the interned author), plus
+    // the postId index node of the entry and the reference to an interned pulled author
+    private static final int HEAD_BYTES = 96;
+    private static final int ENTRY_BYTES = 56;
+    private static final int INDEX_BYTES = 88;
+    private static final int AUTHOR_BYTES = 8;
+
+    private final int headSize;
+    private final Cache<String, Head> heads;
+    // postId -> usernames of the cached heads holding an entry for the post
+    private final Map<String, Set<String>> headsByPost = new ConcurrentHashMap<>();
+
+    public TimelineCache(@ConfigProperty(name = "timeline.home.cache.head-size", defaultValue = "100") int headSize,
+                         @ConfigProperty(name = "timeline.home.cache.max-weight-bytes", defaultValue = "67108864") long maxWeight,
+                         @ConfigProperty(name = "timeline.home.cache.expire-after-write", defaultValue = "10M") Duration expireAfterWrite,
+                         MeterRegistry registry) {
+        this.headSize = headSize;
+        this.heads = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((String username, Head head) -> HEAD_BYTES + head.getPosts().size() * (ENTRY_BYTES + INDEX_BYTES)
+                        + head.getPulledAuthors().size() * AUTHOR_BYTES)
+                .expireAfterWrite(expireAfterWrite)
+                // Runs inside the atomic removal, before the key can be loaded again
+                .evictionListener((String username, Head head, RemovalCause cause) -> {
+                    if (username != null && head != null) {
+                        unindex(username, head.getPosts());
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, heads, "home_timeline_heads");
+    }
+
+    public int getHeadSize() {
+        return headSize;
+    }
+
+    /**
+     * Returns the cached head of a timeline, loading it on a miss or when it was built with an older
+     * version of the fan-out settings.
+     *
+     * @param username      the owner of the timeline
+     * @param policyVersion the current version of the fan-out settings
+     * @param loader        fetches the first {@link #getHeadSize()} entries of the timeline, most recent first,
+     *                      and the pulled authors followed by the user
+     * @return the head of the timeline
+     */
+    public Head get(String username, long policyVersion, Function<String, Head> loader) {
+        Head head = heads.get(username, key -> index(key, loader.apply(key)));
+        if (head.getPolicyVersion() >= policyVersion) {
+            return head;
+        }
+        return heads.asMap().compute(username, (key, cached) -> {
+            if (cached != null && cached.getPolicyVersion() >= policyVersion) {
+                return cached;
+            }
+            if (cached != null) {
+                unindex(key, cached.getPosts());
+            }
+            return index(key, loader.apply(key));
+        });
+    }
+
+    /**
+     * Adds fanned out entries to the cached heads of the given timelines. Timelines that are not
+     * cached are left alone. Entries already in a head are not added twice.
+     *
+     * @param usernames the owners of the timelines
+     * @param posts     the entries written to the timelines
+     */
+    public void push(Collection<String> usernames, List<TimelinePost> posts) {
+        for (String username : usernames) {
+            heads.asMap().computeIfPresent(username, (key, head) -> {
+                Head updated = head.with(posts, headSize);
+                if (updated != head) {
+                    unindex(key, dropped(head.getPosts(), updated.getPosts()));
+                    index(key, dropped(updated.getPosts(), head.getPosts()));
+                }
+                return updated;
+            });
+        }
+    }
+
+    public void invalidate(String username) {
+        heads.asMap().computeIfPresent(username, (key, head) -> {
+            unindex(key, head.getPosts());
+            return null;
+        });
+    }
+
+    /**
+     * Drops the cached heads holding an entry.
+     *
+     * @param postId   the ID of the post
+     * @param authorId the author (or liker) of the entry
+     * @param type     the entry type ("POSTED" or "LIKED")
+     */
+    public void invalidateEntry(String postId, String authorId, String type) {
+        Set<String> usernames = headsByPost.get(postId);
+        if (usernames == null) {
+            return;
+        }
+        TimelinePost entry = new TimelinePost(postId, authorId, type, new Date(0));
+        for (String username : List.copyOf(usernames)) {
+            heads.asMap().computeIfPresent(username, (key, head) -> {
+                if (head.getPosts().stream().noneMatch(entry::sameEntry)) {
+                    return head;
+                }
+                unindex(key, head.getPosts());
+                return null;
+            });
+        }
+    }
+
+    // The index is only changed while the head of the user is being computed, so it cannot be
+    // reordered with another update of the same head
+    private Head index(String username, Head head) {
+        index(username, head.getPosts());
+        return head;
+    }
+
+    private void index(String username, List<TimelinePost> posts) {
+        for (TimelinePost post : posts) {
+            headsByPost.computeIfAbsent(post.getPostId(), postId -> ConcurrentHashMap.newKeySet()).add(username);
+        }
+    }
+
+    private void unindex(String username, List<TimelinePost> posts) {
+        for (TimelinePost post : posts) {
+            headsByPost.computeIfPresent(post.getPostId(), (postId, usernames) -> {
+                usernames.remove(username);
+                return usernames.isEmpty() ? null : usernames;
+            });
+        }
+    }
+
+    /**
+     * @return the entries of {@code from} whose post has no entry in {@code to}. A post can have several
+     *         entries in a head (posted and liked), it stays indexed as long as one of them remains.
+     */
+    private static List<TimelinePost> dropped(List<TimelinePost> from, List<TimelinePost> to) {
+        Set<String> kept = new HashSet<>(to.size() * 2);
+        for (TimelinePost post : to) {
+            kept.add(post.getPostId());
+        }
+        List<TimelinePost> dropped = new ArrayList<>();
+        for (TimelinePost post : from) {
+            if (!kept.contains(post.getPostId())) {
+                dropped.add(post);
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Immutable head of a timeline. {@code complete} is set when the head holds the whole timeline,
+     * so that reads past its end do not have to go to the database. {@code pulledAuthors} are the
+     * followed authors whose posts are merged at read time, as of {@code policyVersion}.
+     */
+    public static final class Head {
+        private final List<TimelinePost> posts;
+        private final Date lastUpdated;
+        private final boolean complete;
+        private final List<String> pulledAuthors;
+        private final long policyVersion;
+
+        public Head(List<TimelinePost> posts, Date lastUpdated, boolean complete, List<String> pulledAuthors, long policyVersion) {
+            this.posts = List.copyOf(posts);
+            this.lastUpdated = lastUpdated;
+            this.complete = complete;
+            this.pulledAuthors = List.copyOf(pulledAuthors);
+            this.policyVersion = policyVersion;
+        }
+
+        public List<TimelinePost> getPosts() {
+            return posts;
+        }
+
+        public Date getLastUpdated() {
+            return lastUpdated;
+        }
+
+        public boolean isComplete() {
+            return complete;
+        }
+
+        public List<String> getPulledAuthors() {
+            return pulledAuthors;
+        }
+
+        public long getPolicyVersion() {
+            return policyVersion;
+        }
+
+        private Head with(List<TimelinePost> added, int headSize) {
+            List<TimelinePost> fresh = new ArrayList<>(added.size());
+            for (TimelinePost post : added) {
+                if (posts.stream().noneMatch(post::sameEntry)) {
+                    fresh.add(post);
+                }
+            }
+            if (fresh.isEmpty()) {
+                return this;
+            }
+            fresh.sort(TimelineMerger.MOST_RECENT_FIRST);
+            List<TimelinePost> merged = TimelineMerger.merge(List.of(fresh, posts), headSize);
+            // Entries pushed out of the head still exist in the database
+            boolean stillComplete = complete && posts.size() + fresh.size() <= headSize;
+            return new Head(merged, new Date(), stillComplete, pulledAuthors, policyVersion);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.epita.service;
+
+import com.epita.repository.entity.TimelinePost;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Date;
+
+/**
+ * Position in a home timeline, encoded as {@code <epochMillis>:<postId>}. A page starting at a cursor
+ * holds the entries strictly older than it; entries sharing the same date are ordered by postId.
+ */
+@Getter
+@AllArgsConstructor
+public class TimelineCursor {
+    private final Date date;
+    private final String postId;
+
+    /**
+     * @param value the encoded cursor, possibly null or empty
+     * @return the decoded cursor, or null if no cursor was given
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static TimelineCursor parse(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        int separator = value.indexOf(':');
+        if (separator <= 0 || separator == value.length() - 1) {
+            throw new IllegalArgumentException("Invalid cursor: " + value);
+        }
+        try {
+            return new TimelineCursor(new Date(Long.parseLong(value.substring(0, separator))), value.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + value, e);
+        }
+    }
+
+    public static TimelineCursor of(TimelinePost post) {
+        return new TimelineCursor(post.getDate(), post.getPostId());
+    }
+
+    /**
+     * @param post a timeline entry
+     * @return true if the entry comes after this cursor in a timeline sorted most recent first
+     */
+    public boolean isBefore(TimelinePost post) {
+        int byDate = post.getDate().compareTo(date);
+        return byDate < 0 || (byDate == 0 && post.getPostId().compareTo(postId) < 0);
+    }
+
+    @Override
+    public String toString() {
+        return date.getTime() + ":" + postId;
+    }
+}
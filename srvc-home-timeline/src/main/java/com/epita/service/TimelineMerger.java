@@ -0,0 +1,93 @@
+package com.epita.service;
+
+import com.epita.repository.entity.TimelinePost;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * K-way merge of timelines already sorted by date, most recent first, then by postId.
+ */
+public class TimelineMerger {
+
+    public static final Comparator<TimelinePost> MOST_RECENT_FIRST =
+            Comparator.<TimelinePost>naturalOrder().reversed();
+
+    private TimelineMerger() {
+    }
+
+    /**
+     * Merges sorted sources into a single sorted list of at most {@code limit} entries.
+     * Entries sharing the same post, author and type are only kept once.
+     *
+     * @param sources the timelines to merge, each sorted most recent first
+     * @param limit   the maximum number of entries returned
+     * @return the merged timeline
+     */
+    public static List<TimelinePost> merge(List<List<TimelinePost>> sources, int limit) {
+        PriorityQueue<Cursor> heads = new PriorityQueue<>(Math.max(1, sources.size()),
+                (c1, c2) -> MOST_RECENT_FIRST.compare(c1.current(), c2.current()));
+        for (List<TimelinePost> source : sources) {
+            if (source != null && !source.isEmpty()) {
+                heads.add(new Cursor(source));
+            }
+        }
+
+        List<TimelinePost> merged = new ArrayList<>();
+        Set<Entry> seen = new HashSet<>();
+        while (!heads.isEmpty() && merged.size() < limit) {
+            Cursor head = heads.poll();
+            TimelinePost post = head.current();
+            if (seen.add(new Entry(post))) {
+                merged.add(post);
+            }
+            if (head.advance()) {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Identity of an entry (post, author and type) for deduplication.
+     */
+    private static final class Entry {
+        private final TimelinePost post;
+
+        private Entry(TimelinePost post) {
+            this.post = post;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Entry entry && post.sameEntry(entry.post);
+        }
+
+        @Override
+        public int hashCode() {
+            int idHash = post.uuidPostId() ? Long.hashCode(post.idHigh() ^ post.idLow()) : post.rawPostId().hashCode();
+            return (idHash * 31 + post.getAuthorId().hashCode()) * 31 + post.typeCode();
+        }
+    }
+
+    private static final class Cursor {
+        private final List<TimelinePost> source;
+        private int position;
+
+        private Cursor(List<TimelinePost> source) {
+            this.source = source;
+        }
+
+        private TimelinePost current() {
+            return source.get(position);
+        }
+
+        private boolean advance() {
+            return ++position < source.size();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.epita.service;
+
+import com.epita.repository.TimelineStore;
+import com.epita.repository.entity.TimelinePost;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Instance;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces the fan-out writes aimed at the same timeline. Entries are buffered per timeline and
+ * flushed as a single push per timeline every {@code timeline.home.write-buffer.window}, or as soon as
+ * a timeline has {@code timeline.home.write-buffer.max-entries} pending entries. A window of 0 disables
+ * the buffer. Everything pending is flushed on shutdown.
+ * Buffering, flushing and the writes of full timelines all hold the buffer lock, so a {@link #flush()}
+ * returns only once nothing buffered before it can still be written.
+ * Entries whose write fails are put back in the buffer and written again on the next flush. A timeline
+ * only keeps its {@code timeline.home.max-entries} most recent entries, and so does its buffer.
+ */
+@ApplicationScoped
+public class TimelineWriteBuffer {
+
+    private final TimelineStore timelineStore;
+    private final TimelineCache timelineCache;
+    private final Logger logger;
+    private final int maxEntries;
+    private final int batchSize;
+    private final int maxPending;
+    private final Duration window;
+    private final DistributionSummary coalescedEntries;
+    private final Counter failedWrites;
+    // Guarded by this
+    private final Map<String, List<TimelinePost>> pending = new HashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    public TimelineWriteBuffer(Instance<TimelineStore> timelineStores,
+                               TimelineCache timelineCache,
+                               MeterRegistry registry,
+                               Logger logger,
+                               @ConfigProperty(name = "timeline.home.max-entries", defaultValue = "800") int maxEntries,
+                               @ConfigProperty(name = "timeline.home.fanout.batch-size", defaultValue = "500") int batchSize,
+                               @ConfigProperty(name = "timeline.home.write-buffer.max-entries", defaultValue = "100") int maxPending,
+                               @ConfigProperty(name = "timeline.home.write-buffer.window", defaultValue = "50ms") Duration window) {
+        this.timelineStore = timelineStores.get();
+        this.timelineCache = timelineCache;
+        this.logger = logger;
+        this.maxEntries = maxEntries;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        this.window = window;
+        this.coalescedEntries = DistributionSummary.builder("home_timeline.write_buffer.entries")
+                .description("Number of entries written to a timeline in one coalesced push")
+                .register(registry);
+        this.failedWrites = Counter.builder("home_timeline.write_buffer.failures")
+                .description("Number of coalesced writes that failed and were put back in the buffer")
+                .register(registry);
+        if (window.isZero()) {
+            this.flusher = null;
+        } else {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "home-timeline-write-buffer"));
+            this.flusher.scheduleWithFixedDelay(this::flushQuietly, window.toMillis(), window.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Queues the same entries for many timelines. Timelines reaching the size cap are written right away;
+     * if that write fails, their entries stay buffered for the next flush.
+     *
+     * @param usernames the owners of the timelines
+     * @param posts     the entries to add
+     */
+    public void add(Collection<String> usernames, List<TimelinePost> posts) {
+        synchronized (this) {
+            if (flusher != null && !flusher.isShutdown()) {
+                Map<String, List<TimelinePost>> full = new HashMap<>();
+                for (String username : usernames) {
+                    List<TimelinePost> entries = pending.computeIfAbsent(username, key -> new ArrayList<>(posts.size()));
+                    entries.addAll(posts);
+                    if (entries.size() >= maxPending) {
+                        full.put(username, pending.remove(username));
+                    }
+                }
+                if (!full.isEmpty()) {
+                    try {
+                        write(full);
+                    } catch (RuntimeException e) {
+                        // The entries of this call are buffered already, failing it would buffer them twice on retry
+                        logger.warnf("[WRITE BUFFER][ADD]: Error writing %d full timelines, keeping them buffered: %s",
+                                full.size(), e.getMessage());
+                        restore(full);
+                    }
+                }
+                return;
+            }
+        }
+        // Once shut down, late events are written through
+        timelineStore.pushPostsToAll(usernames, posts, maxEntries, batchSize);
+        timelineCache.push(usernames, posts);
+    }
+
+    /**
+     * Writes every pending entry. Called before removals so that a buffered entry cannot be written back
+     * after it was removed. If the write fails, the entries stay buffered and the exception is rethrown,
+     * so that the removal fails too.
+     */
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<String, List<TimelinePost>> drained = new HashMap<>(pending);
+        pending.clear();
+        try {
+            write(drained);
+        } catch (RuntimeException e) {
+            restore(drained);
+            throw e;
+        }
+    }
+
+    // Holds the lock: puts back entries that could not be written, keeping the most recent ones
+    private void restore(Map<String, List<TimelinePost>> postsByUsername) {
+        failedWrites.increment();
+        for (Map.Entry<String, List<TimelinePost>> timeline : postsByUsername.entrySet()) {
+            List<TimelinePost> entries = pending.computeIfAbsent(timeline.getKey(), key -> new ArrayList<>());
+            entries.addAll(timeline.getValue());
+            if (entries.size() > maxEntries) {
+                entries.sort(TimelineMerger.MOST_RECENT_FIRST);
+                entries.subList(maxEntries, entries.size()).clear();
+            }
+        }
+    }
+
+    // Holds the lock, see add and flush
+    private void write(Map<String, List<TimelinePost>> postsByUsername) {
+        for (Map.Entry<String, List<TimelinePost>> timeline : postsByUsername.entrySet()) {
+            timeline.getValue().sort(TimelineMerger.MOST_RECENT_FIRST);
+            coalescedEntries.record(timeline.getValue().size());
+        }
+        timelineStore.pushPostsEach(postsByUsername, maxEntries, batchSize);
+        for (Map.Entry<String, List<TimelinePost>> timeline : postsByUsername.entrySet()) {
+            timelineCache.push(List.of(timeline.getKey()), timeline.getValue());
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.errorf("[WRITE BUFFER][FLUSH]: Error flushing pending timeline writes, retrying on the next flush: %s", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(window.toMillis() * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush();
+            logger.info("[WRITE BUFFER][SHUTDOWN]: Pending timeline writes flushed");
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                logger.errorf("[WRITE BUFFER][SHUTDOWN]: Lost pending writes of %d timelines: %s", pending.size(), e.getMessage());
+            }
+        }
+    }
+}
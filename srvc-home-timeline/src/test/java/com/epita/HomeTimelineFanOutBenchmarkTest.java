@@ -0,0 +1,105 @@
+package com.epita;
+
+import com.epita.repository.HomeTimelineRepository;
+import com.epita.repository.UserActivityRepository;
+import com.epita.repository.entity.HomeTimelines;
+import com.epita.repository.entity.TimelinePost;
+import com.epita.repository.entity.UserActivity;
+import com.epita.service.HomeTimelineService;
+import com.epita.service.TimelineWriteBuffer;
+import com.mongodb.client.model.Filters;
+
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures fan-out throughput (followers per second) of the legacy read-modify-write path against
+ * the bulk upsert path. Run with {@code mvn test -Dbenchmark=true [-Dbenchmark.followers=N]}; the results
+ * are published as report entries of the test (surefire XML reports).
+ */
+@QuarkusTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class HomeTimelineFanOutBenchmarkTest {
+
+    private static final String PREFIX = "bench-";
+    private static final String AUTHOR = PREFIX + "author";
+    private static final int FOLLOWERS = Integer.getInteger("benchmark.followers", 10000);
+
+    @Inject
+    HomeTimelineService homeTimelineService;
+
+    @Inject
+    HomeTimelineRepository homeTimelineRepository;
+
+    @Inject
+    UserActivityRepository userActivityRepository;
+
+    @Inject
+    TimelineWriteBuffer writeBuffer;
+
+    @BeforeEach
+    public void seedFollowers() {
+        cleanup();
+        List<UserActivity> activities = new ArrayList<>(FOLLOWERS);
+        for (int i = 0; i < FOLLOWERS; i++) {
+            activities.add(new UserActivity(PREFIX + "follower-" + i, new ArrayList<>(List.of(AUTHOR)), new ArrayList<>()));
+        }
+        userActivityRepository.persist(activities);
+    }
+
+    @AfterEach
+    public void cleanup() {
+        userActivityRepository.mongoCollection().deleteMany(Filters.regex("_id", "^" + PREFIX));
+        homeTimelineRepository.mongoCollection().deleteMany(Filters.regex("_id", "^" + PREFIX));
+    }
+
+    @Test
+    public void testFanOutThroughput(TestReporter reporter) {
+        List<String> followers = userActivityRepository.getFollowers(AUTHOR);
+        assertEquals(FOLLOWERS, followers.size());
+
+        // Legacy path: one read and one full document replace per follower
+        long start = System.nanoTime();
+        for (String follower : followers) {
+            HomeTimelines timeline = homeTimelineService.getTimeline(follower);
+            timeline.getPosts().add(new TimelinePost(PREFIX + "post-0", AUTHOR, "POSTED", new Date()));
+            timeline.getPosts().sort((p1, p2) -> p2.getDate().compareTo(p1.getDate()));
+            timeline.setLastUpdated(new Date());
+            homeTimelineRepository.persistOrUpdate(timeline);
+        }
+        double before = followersPerSecond(start);
+
+        // Bulk path: unordered bulkWrite batches of upserts, through the write buffer
+        start = System.nanoTime();
+        homeTimelineService.addPost(AUTHOR, PREFIX + "post-1", new Date());
+        writeBuffer.flush();
+        double after = followersPerSecond(start);
+
+        reporter.publishEntry(Map.of(
+                "followers", Integer.toString(FOLLOWERS),
+                "readModifyWriteFollowersPerSecond", String.format("%.0f", before),
+                "bulkFollowersPerSecond", String.format("%.0f", after),
+                "speedup", String.format("%.1f", after / before)));
+
+        HomeTimelines timeline = homeTimelineService.getTimeline(followers.get(FOLLOWERS - 1));
+        assertEquals(2, timeline.getPosts().size());
+        assertEquals(PREFIX + "post-1", timeline.getPosts().get(0).getPostId());
+    }
+
+    private double followersPerSecond(long start) {
+        return FOLLOWERS / ((System.nanoTime() - start) / 1e9);
+    }
+}
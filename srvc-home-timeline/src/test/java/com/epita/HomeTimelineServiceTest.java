@@ -1,9 +1,14 @@
 package com.epita;
 
+import com.epita.dto.responses.HomeTimelinePageResponse;
+import com.epita.repository.FanOutSettingsRepository;
 import com.epita.repository.entity.HomeTimelines;
 import com.epita.events.UserActionEvent;
 import com.epita.redis.UserEventPublisherTest;
+import com.epita.service.FanOutPolicy;
 import com.epita.service.HomeTimelineService;
+import com.epita.service.TimelineCursor;
+import com.epita.service.TimelineWriteBuffer;
 
 import io.quarkus.test.junit.QuarkusTest;
 import jakarta.inject.Inject;
@@ -12,6 +17,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -24,6 +31,15 @@ public class HomeTimelineServiceTest {
     @Inject
     UserEventPublisherTest userEventPublisherTest;
 
+    @Inject
+    FanOutPolicy fanOutPolicy;
+
+    @Inject
+    FanOutSettingsRepository fanOutSettingsRepository;
+
+    @Inject
+    TimelineWriteBuffer writeBuffer;
+
     Date date1 = new Date("December 17, 1995 03:24:00");
     Date date2 = new Date("January 20, 2015 17:10:52");
     Date date3 = new Date("February 28, 2020 12:00:00");
@@ -266,6 +282,57 @@ public class HomeTimelineServiceTest {
         assertEquals(0, timeline.getPosts().size());
     }
 
+    @Test
+    public void testUnfollowDuringFanOutKeepsOtherEntries() throws Exception {
+        String reader = "unfollow-reader";
+        String unfollowed = "unfollow-unfollowed";
+        String kept = "unfollow-kept";
+        int fanOuts = 50;
+
+        homeTimelineService.addFollow(reader, unfollowed);
+        homeTimelineService.addFollow(reader, kept);
+        try {
+            homeTimelineService.addPost(unfollowed, "unfollow-post", date1);
+            writeBuffer.flush();
+
+            // The unfollow runs under the reader's key, the fan-outs under the author's
+            CountDownLatch start = new CountDownLatch(1);
+            CompletableFuture<Void> fanOut = CompletableFuture.runAsync(() -> {
+                awaitStart(start);
+                for (int i = 0; i < fanOuts; i++) {
+                    homeTimelineService.addPost(kept, "kept-post" + i, new Date(date2.getTime() + i));
+                    writeBuffer.flush();
+                }
+            });
+            CompletableFuture<Void> unfollow = CompletableFuture.runAsync(() -> {
+                awaitStart(start);
+                homeTimelineService.removeFollow(reader, unfollowed);
+            });
+            start.countDown();
+            CompletableFuture.allOf(fanOut, unfollow).get();
+            writeBuffer.flush();
+
+            HomeTimelines timeline = homeTimelineService.getTimeline(reader);
+            assertEquals(fanOuts, timeline.getPosts().size());
+            assertTrue(timeline.getPosts().stream().allMatch(post -> post.getAuthorId().equals(kept)));
+        } finally {
+            homeTimelineService.removePost(unfollowed, "unfollow-post");
+            for (int i = 0; i < fanOuts; i++) {
+                homeTimelineService.removePost(kept, "kept-post" + i);
+            }
+            homeTimelineService.removeFollow(reader, unfollowed);
+            homeTimelineService.removeFollow(reader, kept);
+        }
+    }
+
+    private static void awaitStart(CountDownLatch start) {
+        try {
+            start.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     @Test
     public void testUnfollowUnknown() {
         String username1 = "user1";
@@ -607,4 +674,110 @@ public class HomeTimelineServiceTest {
         assertEquals(postId3, timeline.getPosts().get(0).getPostId());
         assertEquals("POSTED", timeline.getPosts().get(0).getType());
     }
+
+    @Test
+    public void testPulledAuthor() {
+        String username1 = "user1";
+        String username2 = "user2";
+        String postId1 = "post1";
+
+        fanOutPolicy.setMode(username1, "PULL");
+        try {
+            UserActionEvent event = new UserActionEvent();
+            event.setActionType(UserActionEvent.ActionType.USER_FOLLOWED);
+            event.setUsername(username2);
+            event.setTargetUsername(username1);
+            userEventPublisherTest.publishAction(event, UserActionEvent.ActionType.USER_FOLLOWED.getValue());
+
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+
+            event = new UserActionEvent();
+            event.setUsername(username1);
+            event.setPostId(postId1);
+            event.setActionType(UserActionEvent.ActionType.POST_CREATED);
+            event.setPostContent("Hello, world!");
+            event.setTimestamp(date1);
+            userEventPublisherTest.publishAction(event, UserActionEvent.ActionType.POST_CREATED.getValue());
+
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+
+            // The post is not fanned out, but merged at read time
+            HomeTimelines timeline = homeTimelineService.getTimeline(username2);
+            assertEquals(0, timeline.getPosts().size());
+            HomeTimelinePageResponse page = homeTimelineService.getHomeTimeline(username2, null, null);
+            assertEquals(1, page.getPosts().size());
+            assertEquals(postId1, page.getPosts().get(0).getPostId());
+            assertEquals(username1, page.getPosts().get(0).getAuthorId());
+            assertEquals(date1, page.getPosts().get(0).getDate());
+            assertNull(page.getNextCursor());
+        } finally {
+            fanOutPolicy.setMode(username1, null);
+        }
+    }
+
+    @Test
+    public void testThresholdIsShared() throws InterruptedException {
+        long threshold = fanOutPolicy.getThreshold();
+        try {
+            // Changed by another instance, picked up on the next refresh
+            fanOutSettingsRepository.saveThreshold(42);
+            Thread.sleep(6000);
+            assertEquals(42L, fanOutPolicy.getThreshold());
+        } finally {
+            fanOutPolicy.setThreshold(threshold);
+        }
+    }
+
+    @Test
+    public void testPagination() {
+        String username1 = "user1";
+        String username2 = "user2";
+
+        UserActionEvent event = new UserActionEvent();
+        event.setActionType(UserActionEvent.ActionType.USER_FOLLOWED);
+        event.setUsername(username2);
+        event.setTargetUsername(username1);
+        userEventPublisherTest.publishAction(event, UserActionEvent.ActionType.USER_FOLLOWED.getValue());
+
+        try {
+            Thread.sleep(2000);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+
+        // post1 and post2 share the same date, the postId breaks the tie
+        for (int i = 0; i < 2; i++) {
+            event = new UserActionEvent();
+            event.setUsername(username1);
+            event.setPostId("post" + (i + 1));
+            event.setActionType(UserActionEvent.ActionType.POST_CREATED);
+            event.setPostContent("Hello, world!");
+            event.setTimestamp(date2);
+            userEventPublisherTest.publishAction(event, UserActionEvent.ActionType.POST_CREATED.getValue());
+
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+
+        HomeTimelinePageResponse page = homeTimelineService.getHomeTimeline(username2, 1, null);
+        assertEquals(1, page.getPosts().size());
+        assertEquals("post2", page.getPosts().get(0).getPostId());
+        assertNotNull(page.getNextCursor());
+
+        page = homeTimelineService.getHomeTimeline(username2, 1, TimelineCursor.parse(page.getNextCursor()));
+        assertEquals(1, page.getPosts().size());
+        assertEquals("post1", page.getPosts().get(0).getPostId());
+        assertNull(page.getNextCursor());
+    }
 }
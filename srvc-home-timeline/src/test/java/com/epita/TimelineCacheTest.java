@@ -0,0 +1,87 @@
+package com.epita;
+
+import com.epita.repository.entity.TimelinePost;
+import com.epita.service.TimelineCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimelineCacheTest {
+
+    private TimelineCache timelineCache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    public void setUp() {
+        timelineCache = new TimelineCache(3, 1 << 20, Duration.ofMinutes(10), new SimpleMeterRegistry());
+        loads = new AtomicInteger();
+    }
+
+    private TimelineCache.Head load(List<TimelinePost> posts, long policyVersion) {
+        loads.incrementAndGet();
+        return new TimelineCache.Head(posts, new Date(), posts.size() < timelineCache.getHeadSize(), List.of("author"), policyVersion);
+    }
+
+    private static TimelinePost post(String postId, String authorId, String type, long date) {
+        return new TimelinePost(postId, authorId, type, new Date(date));
+    }
+
+    @Test
+    public void testInvalidateEntryDropsOnlyTheHeadsHoldingIt() {
+        timelineCache.get("user1", 0, username -> load(List.of(post("post1", "author", "POSTED", 1)), 0));
+        timelineCache.get("user2", 0, username -> load(List.of(post("post2", "author", "POSTED", 2)), 0));
+
+        timelineCache.invalidateEntry("post1", "author", "POSTED");
+
+        timelineCache.get("user1", 0, username -> load(List.of(), 0));
+        timelineCache.get("user2", 0, username -> load(List.of(), 0));
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void testPushedEntriesAreIndexed() {
+        timelineCache.get("user1", 0, username -> load(List.of(), 0));
+        timelineCache.push(List.of("user1"), List.of(post("post1", "author", "POSTED", 1)));
+
+        timelineCache.invalidateEntry("post1", "author", "POSTED");
+
+        TimelineCache.Head head = timelineCache.get("user1", 0, username -> load(List.of(), 0));
+        assertEquals(2, loads.get());
+        assertTrue(head.getPosts().isEmpty());
+    }
+
+    @Test
+    public void testPostStaysIndexedWhileOneOfItsEntriesIsInTheHead() {
+        timelineCache.get("user1", 0, username -> load(List.of(
+                post("post1", "author", "POSTED", 3),
+                post("post1", "liker", "LIKED", 1)), 0));
+        // Pushes the like out of the head, the post itself stays
+        timelineCache.push(List.of("user1"), List.of(post("post2", "author", "POSTED", 4)));
+        timelineCache.push(List.of("user1"), List.of(post("post3", "author", "POSTED", 5)));
+
+        timelineCache.invalidateEntry("post1", "author", "POSTED");
+
+        timelineCache.get("user1", 0, username -> load(List.of(), 0));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testOutdatedPolicyVersionReloadsTheHead() {
+        timelineCache.get("user1", 0, username -> load(List.of(), 0));
+        timelineCache.get("user1", 0, username -> load(List.of(), 0));
+        assertEquals(1, loads.get());
+
+        TimelineCache.Head head = timelineCache.get("user1", 1, username -> load(List.of(), 1));
+        assertEquals(2, loads.get());
+        assertEquals(1, head.getPolicyVersion());
+        assertEquals(List.of("author"), head.getPulledAuthors());
+    }
+}
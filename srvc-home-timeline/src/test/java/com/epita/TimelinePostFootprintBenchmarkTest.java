@@ -0,0 +1,117 @@
+package com.epita;
+
+import com.epita.repository.codec.TimelinePostCodec;
+import com.epita.repository.entity.TimelinePost;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the BSON size and the heap size of timeline entries in the legacy layout (strings and Date)
+ * and in the compact one, on a synthetic dataset. Run with
+ * {@code mvn test -Dbenchmark=true [-Dbenchmark.entries=N]}; the results are published as report entries
+ * of the tests (surefire XML reports).
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class TimelinePostFootprintBenchmarkTest {
+
+    private static final int ENTRIES = Integer.getInteger("benchmark.entries", 1_000_000);
+    private static final int AUTHORS = 10_000;
+
+    /**
+     * Entry as it was decoded before the compact layout: every field is a fresh object.
+     */
+    private record LegacyTimelinePost(String postId, String authorId, String type, Date date) {
+    }
+
+    @Test
+    public void testStorageSize(TestReporter reporter) {
+        TimelinePostCodec codec = new TimelinePostCodec();
+        DocumentCodec documentCodec = new DocumentCodec();
+        Random random = new Random(42);
+        long legacyBytes = 0;
+        long compactBytes = 0;
+        for (int i = 0; i < ENTRIES; i++) {
+            String postId = new UUID(random.nextLong(), random.nextLong()).toString();
+            String author = "user-" + random.nextInt(AUTHORS);
+            String type = i % 4 == 0 ? "LIKED" : "POSTED";
+            Date date = new Date(1_700_000_000_000L + i);
+
+            Document legacy = new Document("postId", postId).append("authorId", author).append("type", type).append("date", date);
+            legacyBytes += new RawBsonDocument(legacy, documentCodec).getByteBuffer().remaining();
+            compactBytes += new RawBsonDocument(new TimelinePost(postId, author, type, date), codec).getByteBuffer().remaining();
+        }
+
+        report(reporter, "bson", legacyBytes, compactBytes);
+        assertTrue(compactBytes < legacyBytes);
+    }
+
+    @Test
+    public void testHeapSize(TestReporter reporter) {
+        long legacyHeap = measureHeap(() -> {
+            Random random = new Random(42);
+            List<LegacyTimelinePost> posts = new ArrayList<>(ENTRIES);
+            for (int i = 0; i < ENTRIES; i++) {
+                posts.add(new LegacyTimelinePost(
+                        new UUID(random.nextLong(), random.nextLong()).toString(),
+                        "user-" + random.nextInt(AUTHORS),
+                        new String(i % 4 == 0 ? "LIKED" : "POSTED"),
+                        new Date(1_700_000_000_000L + i)));
+            }
+            return posts;
+        });
+        long compactHeap = measureHeap(() -> {
+            Random random = new Random(42);
+            List<TimelinePost> posts = new ArrayList<>(ENTRIES);
+            for (int i = 0; i < ENTRIES; i++) {
+                posts.add(new TimelinePost(
+                        new UUID(random.nextLong(), random.nextLong()).toString(),
+                        "user-" + random.nextInt(AUTHORS),
+                        i % 4 == 0 ? "LIKED" : "POSTED",
+                        new Date(1_700_000_000_000L + i)));
+            }
+            return posts;
+        });
+
+        report(reporter, "heap", legacyHeap, compactHeap);
+        assertTrue(compactHeap < legacyHeap);
+    }
+
+    private static void report(TestReporter reporter, String measure, long legacyBytes, long compactBytes) {
+        reporter.publishEntry(Map.of(
+                "entries", Integer.toString(ENTRIES),
+                measure + "LegacyBytes", Long.toString(legacyBytes),
+                measure + "CompactBytes", Long.toString(compactBytes),
+                measure + "CompactRatio", String.format("%.2f", (double) compactBytes / legacyBytes)));
+    }
+
+    private static long measureHeap(Supplier<List<?>> dataset) {
+        long before = usedHeap();
+        List<?> posts = dataset.get();
+        long after = usedHeap();
+        assertEquals(ENTRIES, posts.size());
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,102 @@
+package com.epita;
+
+import com.epita.repository.TimelineStore;
+import com.epita.repository.entity.TimelinePost;
+import com.epita.service.TimelineCache;
+import com.epita.service.TimelineWriteBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.enterprise.inject.Instance;
+import org.jboss.logging.Logger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimelineWriteBufferTest {
+
+    private final Map<String, List<TimelinePost>> written = new HashMap<>();
+    private volatile boolean failing;
+    private TimelineWriteBuffer writeBuffer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        // Only pushPostsEach is used while the buffer is open
+        TimelineStore store = (TimelineStore) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{TimelineStore.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("pushPostsEach")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    if (failing) {
+                        throw new IllegalStateException("store unavailable");
+                    }
+                    ((Map<String, List<TimelinePost>>) args[0]).forEach((username, posts) ->
+                            written.computeIfAbsent(username, key -> new ArrayList<>()).addAll(posts));
+                    return null;
+                });
+        Instance<TimelineStore> stores = (Instance<TimelineStore>) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Instance.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("get")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    return store;
+                });
+        TimelineCache timelineCache = new TimelineCache(100, 1 << 20, Duration.ofMinutes(10), new SimpleMeterRegistry());
+        // The window is long enough for the scheduled flush never to run during a test
+        writeBuffer = new TimelineWriteBuffer(stores, timelineCache, new SimpleMeterRegistry(), Logger.getLogger(getClass()),
+                3, 500, 2, Duration.ofHours(1));
+    }
+
+    private static TimelinePost post(String postId, long date) {
+        return new TimelinePost(postId, "author", "POSTED", new Date(date));
+    }
+
+    @Test
+    public void testFailedFlushKeepsTheEntries() {
+        writeBuffer.add(List.of("user1"), List.of(post("post1", 1)));
+
+        failing = true;
+        assertThrows(IllegalStateException.class, writeBuffer::flush);
+        assertTrue(written.isEmpty());
+
+        failing = false;
+        writeBuffer.flush();
+        assertEquals(1, written.get("user1").size());
+        assertEquals("post1", written.get("user1").get(0).getPostId());
+    }
+
+    @Test
+    public void testFailedWriteOfFullTimelineKeepsTheEntries() {
+        failing = true;
+        writeBuffer.add(List.of("user1"), List.of(post("post1", 1), post("post2", 2)));
+        assertTrue(written.isEmpty());
+
+        failing = false;
+        writeBuffer.flush();
+        assertEquals(2, written.get("user1").size());
+    }
+
+    @Test
+    public void testKeptEntriesAreBoundedByTheTimelineSize() {
+        failing = true;
+        for (int i = 1; i <= 5; i++) {
+            writeBuffer.add(List.of("user1"), List.of(post("post" + i, i)));
+        }
+
+        failing = false;
+        writeBuffer.flush();
+        List<TimelinePost> posts = written.get("user1");
+        assertEquals(3, posts.size());
+        assertEquals("post5", posts.get(0).getPostId());
+        assertEquals("post3", posts.get(2).getPostId());
+    }
+}
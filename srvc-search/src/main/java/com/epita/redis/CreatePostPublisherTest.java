@@ -1,16 +1,15 @@
 package com.epita.redis;
 
 import com.epita.events.UserActionEvent;
-import io.quarkus.redis.datasource.RedisDataSource;
-import io.quarkus.redis.datasource.pubsub.PubSubCommands;
+import com.epita.events.UserActionEventBus;
 import jakarta.enterprise.context.ApplicationScoped;
 
 @ApplicationScoped
 public class CreatePostPublisherTest {
-    private final PubSubCommands<UserActionEvent> publisher;
+    private final UserActionEventBus publisher;
 
-    public CreatePostPublisherTest(final RedisDataSource ds) {
-        publisher = ds.pubsub(UserActionEvent.class);
+    public CreatePostPublisherTest(final UserActionEventBus eventBus) {
+        publisher = eventBus;
     }
 
     public void publish(final UserActionEvent message) {
@@ -1,45 +1,42 @@
 package com.epita.redis;
 
+import com.epita.events.EventSubscription;
 import com.epita.events.UserActionEvent;
+import com.epita.events.UserActionEventBus;
 import com.epita.service.SearchService;
-import io.quarkus.redis.datasource.RedisDataSource;
-import io.quarkus.redis.datasource.pubsub.PubSubCommands;
 import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import java.util.List;
 import java.util.function.Consumer;
 
-import static io.quarkus.mongodb.runtime.dns.MongoDnsClientProvider.vertx;
-
 @Startup
 @ApplicationScoped
 public class CreatePostSubscriber implements Consumer<UserActionEvent> {
 
     @Inject
     SearchService searchService;
-    private final PubSubCommands.RedisSubscriber subscriber;
+
+    @Inject
+    UserActionEventBus eventBus;
+    private EventSubscription subscription;
 
 
-    public CreatePostSubscriber(RedisDataSource ds) {
-        this.subscriber = ds.pubsub(UserActionEvent.class).subscribe(UserActionEvent.ActionType.POST_CREATED.getValue(), this);
+    @PostConstruct
+    void subscribe() {
+        // Events of the same post are handled in order
+        this.subscription = eventBus.subscribe(List.of(UserActionEvent.ActionType.POST_CREATED), UserActionEvent::getPostId, this);
     }
 
     @Override
     public void accept(final UserActionEvent actionEvent) {
-        vertx.executeBlocking(future -> {
-            try {
-                searchService.createPost(actionEvent);
-                future.complete();
-            } catch (Exception e) {
-                future.fail(e);
-            }
-
-        });
+        searchService.createPost(actionEvent);
     }
 
     @PreDestroy
     public void terminate() {
-        subscriber.unsubscribe();
+        subscription.unsubscribe();
     }
 }
@@ -1,13 +1,14 @@
 package com.epita.redis;
 
+import com.epita.events.EventSubscription;
 import com.epita.events.UserActionEvent;
+import com.epita.events.UserActionEventBus;
 import java.util.Date;
 import com.epita.repository.ServiceUserTimelineMongoRepo;
 import com.epita.repository.models.UserTimelineModel;
 import com.epita.service.entities.PostReferenceEntity;
-import io.quarkus.redis.datasource.RedisDataSource;
-import io.quarkus.redis.datasource.pubsub.PubSubCommands;
 import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
@@ -20,7 +21,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import java.util.function.Consumer;
-import static io.quarkus.mongodb.runtime.dns.MongoDnsClientProvider.vertx;
 
 /**
  * Subscriber for user action events from Redis.
@@ -34,39 +34,36 @@ public class UserTimelineActionSubscriber implements Consumer<UserActionEvent> {
     @Inject
     ServiceUserTimelineMongoRepo userTimelineRepo;
 
-    private final List<PubSubCommands.RedisSubscriber> subscribers = new ArrayList<>();
+    @Inject
+    UserActionEventBus eventBus;
+
+    private EventSubscription subscription;
+
     /**
-     * Constructor to initialize the Redis subscriber.
-     *
-     * @param ds the Redis data source
+     * Subscribes to the user action events once the dependencies are injected.
+     * Events of the same user are handled in order, events of different users in parallel.
      */
-    public UserTimelineActionSubscriber(RedisDataSource ds) {
-        subscribers.add(ds.pubsub(UserActionEvent.class).subscribe(UserActionEvent.ActionType.POST_CREATED.getValue(), this));
-        subscribers.add(ds.pubsub(UserActionEvent.class).subscribe(UserActionEvent.ActionType.POST_DELETED.getValue(), this));
-        subscribers.add(ds.pubsub(UserActionEvent.class).subscribe(UserActionEvent.ActionType.POST_LIKED.getValue(), this));
-        subscribers.add(ds.pubsub(UserActionEvent.class).subscribe(UserActionEvent.ActionType.POST_UNLIKED.getValue(), this));
-        subscribers.add(ds.pubsub(UserActionEvent.class).subscribe(UserActionEvent.ActionType.USER_CREATED.getValue(), this));
-        subscribers.add(ds.pubsub(UserActionEvent.class).subscribe(UserActionEvent.ActionType.USER_DELETED.getValue(), this));
+    @PostConstruct
+    void subscribe() {
+        subscription = eventBus.subscribe(List.of(
+                UserActionEvent.ActionType.POST_CREATED,
+                UserActionEvent.ActionType.POST_DELETED,
+                UserActionEvent.ActionType.POST_LIKED,
+                UserActionEvent.ActionType.POST_UNLIKED,
+                UserActionEvent.ActionType.USER_CREATED,
+                UserActionEvent.ActionType.USER_DELETED), UserActionEvent::getUsername, this);
     }
 
     /**
-     * Handles incoming user action events.
+     * Handles incoming user action events. Runs on the event dispatcher, failures are logged by the bus.
      *
      * @param event the user action event
      */
     @Override
     public void accept(UserActionEvent event) {
-        vertx.executeBlocking(future -> {
-            // Traitement synchrone ici
-            logger.infof("[Event Start] %s", event);
-            handleEvent(event);
-            logger.infof("[Event Success] %s", event);
-            future.complete();
-        }, res -> {
-            if (res.failed()) {
-                logger.errorf("[Event Failed] %s || Error: %s", event, res.cause().getMessage());
-            }
-        });
+        logger.infof("[Event Start] %s", event);
+        handleEvent(event);
+        logger.infof("[Event Success] %s", event);
     }
 
     /**
@@ -109,6 +106,10 @@ public class UserTimelineActionSubscriber implements Consumer<UserActionEvent> {
     private void handleTimelineAddition(String username, String postId, String type, Date date) {
         UserTimelineModel timeline = userTimelineRepo.find("_id", username).firstResult();
         List<PostReferenceEntity> posts = timeline.getPosts();
+        // A replayed event must not add the entry twice
+        if (posts.stream().anyMatch(existing -> existing.getPostId().equals(postId) && existing.getType().equals(type))) {
+            return;
+        }
         PostReferenceEntity post = new PostReferenceEntity(postId, type, date);
         posts.add(post);
         userTimelineRepo.updateUserTimeLineWithUsername(username, posts);
@@ -157,6 +158,6 @@ public class UserTimelineActionSubscriber implements Consumer<UserActionEvent> {
      */
     @PreDestroy
     public void terminate() {
-        subscribers.forEach(PubSubCommands.RedisSubscriber::unsubscribe);
+        subscription.unsubscribe();
     }
 }